@@ -0,0 +1,100 @@
+package bench;
+
+import booking.BookingRepository;
+import booking.BookingServiceImpl;
+import booking.IBookingService;
+import cancellation.CancellationServiceImpl;
+import cancellation.ICancellationService;
+import common.ServiceDirectory;
+import fare.FareEngine;
+import fare.FareRules;
+import ledger.BookingLedger;
+import payment.PaymentServiceImpl;
+import reservation.ReservationServiceImpl;
+import reservation.TrainConfig;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.rmi.Remote;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// The full service stack started inside the benchmark JVM against a throwaway ledger. The
+// services find each other through ServiceDirectory as they do in IRCTCServer, and are also
+// bound in a private registry so the remote benchmarks call them through real stubs over
+// loopback.
+public class BenchEnvironment implements AutoCloseable {
+    public static final int TRAIN = 90001;
+    public static final String CLASS = "SL";
+    private static final int COACHES = 500;
+    private static final int SEATS_PER_COACH = 80;
+    // A train of ordinary size whose seats are sold by leg
+    public static final int LEG_TRAIN = 90002;
+    public static final int LEGS = 8;
+
+    public final ReservationServiceImpl reservationService;
+    public final BookingServiceImpl bookingService;
+    public final CancellationServiceImpl cancellationService;
+    public final IBookingService remoteBookingService;
+    public final ICancellationService remoteCancellationService;
+
+    private final File dataDir;
+    private final BookingLedger ledger;
+    private final Registry registry;
+    private final Remote[] exported;
+    private final AtomicInteger nextDay = new AtomicInteger(1);
+
+    public BenchEnvironment() throws Exception {
+        dataDir = Files.createTempDirectory("irctc-bench").toFile();
+        ledger = new BookingLedger(dataDir);
+
+        reservationService = new ReservationServiceImpl();
+        reservationService.registerTrain(new TrainConfig(TRAIN, "Bench Express",
+            new String[]{CLASS}, new int[]{COACHES}, new int[]{SEATS_PER_COACH}));
+        reservationService.registerTrain(new TrainConfig(LEG_TRAIN, "Bench Passenger",
+            new String[]{CLASS}, new int[]{20}, new int[]{72}, LEGS));
+        ServiceDirectory.register("ReservationService", reservationService);
+        PaymentServiceImpl paymentService = new PaymentServiceImpl();
+        ServiceDirectory.register("PaymentService", paymentService);
+        BookingRepository repository = new BookingRepository(ledger);
+        FareEngine fares = new FareEngine(FareRules.defaults());
+        bookingService = new BookingServiceImpl(ledger, repository, fares, 0);
+        cancellationService = new CancellationServiceImpl(ledger, repository, fares);
+        exported = new Remote[]{reservationService, paymentService, bookingService, cancellationService};
+
+        registry = LocateRegistry.createRegistry(Integer.getInteger("bench.registryPort", 1199));
+        registry.rebind("BookingService", bookingService);
+        registry.rebind("CancellationService", cancellationService);
+        remoteBookingService = (IBookingService) registry.lookup("BookingService");
+        remoteCancellationService = (ICancellationService) registry.lookup("CancellationService");
+    }
+
+    public int seatsPerDay() {
+        return COACHES * SEATS_PER_COACH;
+    }
+
+    // A journey date nobody has booked on yet, so each iteration starts with an empty train
+    public LocalDate freshDate() {
+        return LocalDate.now().plusDays(nextDay.getAndIncrement());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (String name : new String[]{"ReservationService", "PaymentService"}) {
+            ServiceDirectory.unregister(name);
+        }
+        for (Remote service : exported) {
+            UnicastRemoteObject.unexportObject(service, true);
+        }
+        UnicastRemoteObject.unexportObject(registry, true);
+        ledger.close();
+        try (Stream<java.nio.file.Path> files = Files.walk(dataDir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package bench;
+
+// One measured operation. The runner calls setupIteration before each iteration, then
+// operation() the number of times given by operationsPerIteration, spread over the threads.
+public interface Benchmark {
+    String name();
+
+    default void setupIteration() throws Exception {
+    }
+
+    // Asked after setupIteration, so a benchmark can size the iteration to what it prepared
+    int operationsPerIteration();
+
+    // index runs from 0 to operationsPerIteration - 1 across all threads
+    void operation(int index) throws Exception;
+
+    default void teardownIteration() throws Exception {
+    }
+}
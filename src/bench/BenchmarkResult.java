@@ -0,0 +1,72 @@
+package bench;
+
+import common.LatencyHistogram;
+import java.util.Locale;
+
+// Aggregate of the measured iterations of one benchmark at one thread count
+public class BenchmarkResult {
+    public static final String CSV_HEADER =
+        "benchmark,threads,iterations,ops,errors,ops_per_sec,mean_us,p50_us,p90_us,p99_us,p999_us,max_us";
+
+    public final String benchmark;
+    public final int threads;
+    public final int iterations;
+    public final long operations;
+    public final long errors;
+    public final double opsPerSecond;
+    public final double meanMicros;
+    public final double p50Micros;
+    public final double p90Micros;
+    public final double p99Micros;
+    public final double p999Micros;
+    public final double maxMicros;
+
+    public BenchmarkResult(String benchmark, int threads, int iterations, long errors, double opsPerSecond,
+                           LatencyHistogram latency) {
+        this(benchmark, threads, iterations, latency.count(), errors, opsPerSecond, latency.meanNanos() / 1e3,
+            latency.valueAtPercentile(50) / 1e3, latency.valueAtPercentile(90) / 1e3,
+            latency.valueAtPercentile(99) / 1e3, latency.valueAtPercentile(99.9) / 1e3, latency.maxNanos() / 1e3);
+    }
+
+    BenchmarkResult(String benchmark, int threads, int iterations, long operations, long errors, double opsPerSecond,
+                    double meanMicros, double p50Micros, double p90Micros, double p99Micros, double p999Micros,
+                    double maxMicros) {
+        this.benchmark = benchmark;
+        this.threads = threads;
+        this.iterations = iterations;
+        this.operations = operations;
+        this.errors = errors;
+        this.opsPerSecond = opsPerSecond;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public String key() {
+        return benchmark + "@" + threads;
+    }
+
+    public String toCsv() {
+        return String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%.2f,%.2f",
+            benchmark, threads, iterations, operations, errors, opsPerSecond,
+            meanMicros, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"benchmark\":\"%s\",\"threads\":%d,\"iterations\":%d,\"ops\":%d,"
+                + "\"errors\":%d,\"ops_per_sec\":%.1f,\"mean_us\":%.2f,\"p50_us\":%.2f,\"p90_us\":%.2f,"
+                + "\"p99_us\":%.2f,\"p999_us\":%.2f,\"max_us\":%.2f}",
+            benchmark, threads, iterations, operations, errors, opsPerSecond,
+            meanMicros, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+
+    public static BenchmarkResult fromCsv(String line) {
+        String[] f = line.split(",");
+        return new BenchmarkResult(f[0], Integer.parseInt(f[1]), Integer.parseInt(f[2]), Long.parseLong(f[3]),
+            Long.parseLong(f[4]), Double.parseDouble(f[5]), Double.parseDouble(f[6]), Double.parseDouble(f[7]),
+            Double.parseDouble(f[8]), Double.parseDouble(f[9]), Double.parseDouble(f[10]), Double.parseDouble(f[11]));
+    }
+}
@@ -0,0 +1,73 @@
+package bench;
+
+import common.LatencyHistogram;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs warm-up iterations, then measured iterations, of a benchmark at a fixed thread count.
+// Every operation is timed individually; failed operations are counted but not timed.
+public class BenchmarkRunner {
+    private final int warmupIterations;
+    private final int measuredIterations;
+
+    public BenchmarkRunner(int warmupIterations, int measuredIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    public static BenchmarkRunner fromSystemProperties() {
+        return new BenchmarkRunner(Integer.getInteger("bench.warmup", 2), Integer.getInteger("bench.iterations", 5));
+    }
+
+    public BenchmarkResult run(Benchmark benchmark, int threads) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong errors = new AtomicLong();
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(benchmark, threads, new LatencyHistogram(), new AtomicLong());
+        }
+        double totalOpsPerSecond = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            totalOpsPerSecond += runIteration(benchmark, threads, latency, errors);
+        }
+        return new BenchmarkResult(benchmark.name(), threads, measuredIterations, errors.get(),
+            totalOpsPerSecond / measuredIterations, latency);
+    }
+
+    // Returns the throughput of the iteration in operations per second
+    private double runIteration(Benchmark benchmark, int threads, LatencyHistogram latency, AtomicLong errors)
+            throws Exception {
+        benchmark.setupIteration();
+        int operations = benchmark.operationsPerIteration();
+        AtomicInteger nextIndex = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int index = nextIndex.getAndIncrement(); index < operations; index = nextIndex.getAndIncrement()) {
+                    long begin = System.nanoTime();
+                    try {
+                        benchmark.operation(index);
+                        latency.record(System.nanoTime() - begin);
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }, "bench-" + t);
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+        benchmark.teardownIteration();
+        return operations * 1e9 / Math.max(1, elapsed);
+    }
+}
@@ -0,0 +1,96 @@
+package bench;
+
+import booking.IBookingService;
+import cancellation.ICancellationService;
+import common.BookingRequest;
+import common.BookingResult;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// End-to-end booking and cancellation, either calling the implementations directly or through
+// their RMI stubs over loopback. The difference between the two is the cost of the wire. The
+// simulated gateway fails some payments and refunds; those show up in the errors column.
+public final class BookingBenchmarks {
+    private static final int DEFAULT_OPERATIONS = 2_000;
+    private static final int PREPARE_BATCH = 500;
+
+    private BookingBenchmarks() {
+    }
+
+    public static Benchmark book(BenchEnvironment env, boolean remote) {
+        IBookingService service = remote ? env.remoteBookingService : env.bookingService;
+        return new Benchmark() {
+            private volatile LocalDate date;
+
+            @Override
+            public String name() {
+                return remote ? "booking.bookTicket.rmi" : "booking.bookTicket.local";
+            }
+
+            @Override
+            public void setupIteration() {
+                date = env.freshDate();
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return Math.min(Integer.getInteger("bench.ops", DEFAULT_OPERATIONS), env.seatsPerDay());
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                service.bookTicket(new BookingRequest(BenchEnvironment.TRAIN, date, BenchEnvironment.CLASS, 1, "bench"));
+            }
+        };
+    }
+
+    public static Benchmark cancel(BenchEnvironment env, boolean remote) {
+        ICancellationService service = remote ? env.remoteCancellationService : env.cancellationService;
+        return new Benchmark() {
+            private long[] bookingIds = new long[0];
+
+            @Override
+            public String name() {
+                return remote ? "cancellation.cancelBooking.rmi" : "cancellation.cancelBooking.local";
+            }
+
+            // Books the seats the iteration will cancel, in batches and outside the timed section
+            @Override
+            public void setupIteration() throws Exception {
+                LocalDate date = env.freshDate();
+                int wanted = Math.min(Integer.getInteger("bench.ops", DEFAULT_OPERATIONS), env.seatsPerDay());
+                List<Long> booked = new ArrayList<>(wanted);
+                for (int done = 0; done < wanted; done += PREPARE_BATCH) {
+                    List<BookingRequest> batch = new ArrayList<>();
+                    for (int i = done; i < Math.min(wanted, done + PREPARE_BATCH); i++) {
+                        batch.add(new BookingRequest(BenchEnvironment.TRAIN, date, BenchEnvironment.CLASS, 1, "bench"));
+                    }
+                    for (BookingResult result : env.bookingService.bookTickets(batch)) {
+                        if (result.isSuccess()) {
+                            booked.add(result.booking.bookingId);
+                        }
+                    }
+                }
+                long[] ids = new long[booked.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = booked.get(i);
+                }
+                bookingIds = ids;
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return bookingIds.length;
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                BookingResult result = service.cancelBooking(bookingIds[index], 1, null);
+                if (!result.isSuccess()) {
+                    throw new IllegalStateException(result.error);
+                }
+            }
+        };
+    }
+}
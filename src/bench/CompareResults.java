@@ -0,0 +1,57 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compares two CSV result files from RunAll and exits with status 1 if any benchmark lost more
+// than the allowed share of its throughput or gained as much in p99 latency.
+//
+//   java -cp bin bench.CompareResults baseline.csv current.csv [max-regression-percent, default 10]
+public class CompareResults {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults baseline.csv current.csv [max-regression-percent]");
+            System.exit(2);
+        }
+        Map<String, BenchmarkResult> baseline = read(args[0]);
+        Map<String, BenchmarkResult> current = read(args[1]);
+        double limit = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        boolean regressed = false;
+        for (BenchmarkResult now : current.values()) {
+            BenchmarkResult before = baseline.get(now.key());
+            if (before == null) {
+                System.out.printf("%-45s new%n", now.key());
+                continue;
+            }
+            double throughputChange = percentChange(before.opsPerSecond, now.opsPerSecond);
+            double p99Change = percentChange(before.p99Micros, now.p99Micros);
+            boolean bad = throughputChange < -limit || p99Change > limit;
+            regressed |= bad;
+            System.out.printf("%-45s ops/s %+7.1f%%  p99 %+7.1f%%%s%n", now.key(), throughputChange, p99Change,
+                bad ? "  REGRESSION" : "");
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private static double percentChange(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+
+    private static Map<String, BenchmarkResult> read(String file) throws IOException {
+        Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(Paths.get(file));
+        for (String line : lines) {
+            if (line.isEmpty() || line.startsWith("benchmark,")) {
+                continue;
+            }
+            BenchmarkResult result = BenchmarkResult.fromCsv(line);
+            results.put(result.key(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,45 @@
+package bench;
+
+import fare.FareEngine;
+import fare.FareRules;
+import java.time.LocalDate;
+
+// Fare quotes through the engine's cache, spread over the default trains, every class and
+// four weeks of journey dates so the cache holds a realistic number of entries.
+//
+//   java -cp bin bench.FareBenchmark
+public class FareBenchmark {
+    private static final int[] TRAINS = {12951, 12627, 12301};
+    private static final String[] CLASSES = {"1A", "2A", "3A", "SL"};
+    private static final int DAYS = 28;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        System.out.println(runner.run(quote(), 1).toCsv());
+    }
+
+    public static Benchmark quote() {
+        FareEngine fares = new FareEngine(FareRules.defaults());
+        LocalDate[] dates = new LocalDate[DAYS];
+        for (int d = 0; d < DAYS; d++) {
+            dates[d] = LocalDate.now().plusDays(d);
+        }
+        return new Benchmark() {
+            @Override
+            public String name() {
+                return "fare.quote";
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return Integer.getInteger("bench.ops", 1_000_000);
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                fares.farePerSeatPaise(TRAINS[index % TRAINS.length], dates[index % DAYS],
+                    CLASSES[index % CLASSES.length], index & 1);
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package bench;
+
+import common.BookingRequest;
+import common.BookingStatus;
+import common.IIRCTCService;
+import common.SeatAllocation;
+import ledger.BookingLedger;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Recovery from a ledger with no snapshot, i.e. a replay of the whole event history. The
+// ledger is written once up front with the event mix of real traffic: every booking is
+// created, paid and booked, and every fourth one gives a seat back. One operation opens the
+// ledger, which folds every record into the projections, and closes it again.
+//
+//   java -cp bin bench.LedgerReplayBenchmark
+//
+//   -Dbench.replayRecords=1000000   records to write before replaying
+public class LedgerReplayBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        Benchmark benchmark = replay();
+        BenchmarkResult result = runner.run(benchmark, 1);
+        System.out.println(result.toCsv());
+        System.out.println(String.format(Locale.ROOT, "%.0f records/s",
+            Long.getLong("bench.replayRecords", 1_000_000) / (result.meanMicros / 1e6)));
+        System.exit(0);
+    }
+
+    // The ledger is only written when the benchmark first runs, so filtering it out costs nothing
+    public static Benchmark replay() {
+        long records = Long.getLong("bench.replayRecords", 1_000_000);
+        return new Benchmark() {
+            private File dataDir;
+
+            @Override
+            public String name() {
+                return "ledger.replay[" + records + " records]";
+            }
+
+            @Override
+            public void setupIteration() throws Exception {
+                if (dataDir == null) {
+                    dataDir = Files.createTempDirectory("irctc-replay").toFile();
+                    dataDir.deleteOnExit();
+                    write(dataDir, records);
+                    File[] files = dataDir.listFiles();
+                    if (files != null) {
+                        for (File file : files) {
+                            file.deleteOnExit();
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return 1;
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                // Never snapshots, so every open replays from the first record
+                new BookingLedger(dataDir, Long.MAX_VALUE).close();
+            }
+        };
+    }
+
+    private static void write(File dataDir, long records) throws Exception {
+        BookingLedger ledger = new BookingLedger(dataDir, Long.MAX_VALUE);
+        LocalDate date = LocalDate.now().plusDays(7);
+        long last = -1;
+        for (long id = 1; last + 1 < records; id++) {
+            IIRCTCService.BookingDetails booking = new IIRCTCService.BookingDetails(id,
+                new BookingRequest(BenchEnvironment.TRAIN, date, BenchEnvironment.CLASS, 4, "user" + (id % 10_000)),
+                4 * 100_00L);
+            booking.status = BookingStatus.PENDING;
+            ledger.created(booking);
+            ledger.statusChanged(id, BookingStatus.PAID);
+            int first = (int) (id * 4 % 80);
+            booking.seats = new SeatAllocation(BenchEnvironment.TRAIN, date, BenchEnvironment.CLASS,
+                new int[]{0, 0, 0, 0}, new int[]{first, first + 1, first + 2, first + 3});
+            last = ledger.booked(booking);
+            if (id % 4 == 0) {
+                last = ledger.cancelled(booking, 1, 100_00L);
+            }
+        }
+        ledger.awaitDurable(last);
+        ledger.close();
+    }
+}
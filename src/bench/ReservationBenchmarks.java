@@ -0,0 +1,123 @@
+package bench;
+
+import common.BookingRequest;
+import common.SeatAllocation;
+import common.SeatHold;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Contention on a single (train, date, class) pool: every thread takes a seat and gives it
+// back, so the pool never runs dry and the measurement is the cost of the shared counters and
+// the seat map.
+public final class ReservationBenchmarks {
+    private static final int BURST_BATCH = 32;
+
+    private ReservationBenchmarks() {
+    }
+
+    public static Benchmark allocateRelease(BenchEnvironment env) {
+        return new PoolBenchmark(env, "reservation.allocateRelease") {
+            @Override
+            public void operation(int index) throws Exception {
+                SeatAllocation seats = env.reservationService.allocateSeats(BenchEnvironment.TRAIN, date,
+                    BenchEnvironment.CLASS, 1);
+                env.reservationService.releaseSeats(seats);
+            }
+        };
+    }
+
+    // The same on a train sold by leg, with about half of every leg sold beforehand so each
+    // seat search has fragments to fit into
+    public static Benchmark allocateReleaseLegs(BenchEnvironment env) {
+        long[] journeys = new long[1024];
+        Random random = new Random(11);
+        for (int i = 0; i < journeys.length; i++) {
+            int from = random.nextInt(BenchEnvironment.LEGS);
+            journeys[i] = SeatAllocation.legs(from, from + 1 + random.nextInt(BenchEnvironment.LEGS - from));
+        }
+        return new PoolBenchmark(env, "reservation.allocateReleaseLegs") {
+            @Override
+            public void setupIteration() throws Exception {
+                super.setupIteration();
+                int sold = 0;
+                int capacity = env.reservationService.getAvailableSeats(BenchEnvironment.LEG_TRAIN, date,
+                    BenchEnvironment.CLASS) * BenchEnvironment.LEGS;
+                for (int i = 0; sold < capacity / 2; i++) {
+                    long legs = journeys[i % journeys.length];
+                    if (env.reservationService.allocateSeats(BenchEnvironment.LEG_TRAIN, date,
+                            BenchEnvironment.CLASS, 1, legs) != null) {
+                        sold += Long.bitCount(legs);
+                    }
+                }
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                SeatAllocation seats = env.reservationService.allocateSeats(BenchEnvironment.LEG_TRAIN, date,
+                    BenchEnvironment.CLASS, 1, journeys[index % journeys.length]);
+                if (seats != null) {
+                    env.reservationService.releaseSeats(seats);
+                }
+            }
+        };
+    }
+
+    public static Benchmark holdRelease(BenchEnvironment env) {
+        return new PoolBenchmark(env, "reservation.holdRelease") {
+            @Override
+            public void operation(int index) throws Exception {
+                SeatHold hold = env.reservationService.holdSeats(BenchEnvironment.TRAIN, date,
+                    BenchEnvironment.CLASS, 1);
+                env.reservationService.releaseHold(hold);
+            }
+        };
+    }
+
+    // What burst mode sends: BURST_BATCH single-seat holds on the pool in one call, granted
+    // with one CAS. One operation is a whole batch, held and released.
+    public static Benchmark holdReleaseBatch(BenchEnvironment env) {
+        return new PoolBenchmark(env, "reservation.holdReleaseBatch") {
+            @Override
+            public int operationsPerIteration() {
+                return super.operationsPerIteration() / BURST_BATCH;
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                List<BookingRequest> requests = new ArrayList<>(BURST_BATCH);
+                for (int i = 0; i < BURST_BATCH; i++) {
+                    requests.add(new BookingRequest(BenchEnvironment.TRAIN, date, BenchEnvironment.CLASS, 1));
+                }
+                env.reservationService.releaseHolds(env.reservationService.holdSeats(requests));
+            }
+        };
+    }
+
+    private abstract static class PoolBenchmark implements Benchmark {
+        final BenchEnvironment env;
+        private final String name;
+        volatile LocalDate date;
+
+        PoolBenchmark(BenchEnvironment env, String name) {
+            this.env = env;
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public void setupIteration() throws Exception {
+            date = env.freshDate();
+        }
+
+        @Override
+        public int operationsPerIteration() {
+            return Integer.getInteger("bench.ops", 200_000);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package bench;
+
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs every benchmark and writes one result row per benchmark and thread count.
+//
+//   java -cp bin bench.RunAll [name-filter]
+//
+//   -Dbench.threads=1,2,4,8,16,32,64   thread counts for the reservation contention benchmarks
+//   -Dbench.bookingThreads=1,8,64      thread counts for booking and cancellation
+//   -Dbench.warmup=2 -Dbench.iterations=5
+//   -Dbench.ops=N                      operations per iteration, overriding each benchmark's default
+//   -Dbench.replayRecords=N            ledger records replayed by ledger.replay, 1000000 by default
+//   -Dbench.searchTrains=N             generated trains indexed by search.trains, 5000 by default
+//   -Dbench.format=csv|json            output format, csv by default
+//   -Dbench.out=results.csv            write results to a file as well as stdout
+public class RunAll {
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        int[] contentionThreads = threadCounts("bench.threads", "1,2,4,8,16,32,64");
+        int[] bookingThreads = threadCounts("bench.bookingThreads", "1,8,64");
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        List<BenchmarkResult> results = new ArrayList<>();
+        // The services log to stdout; keep it for the results alone
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+
+        try (BenchEnvironment env = new BenchEnvironment()) {
+            run(runner, ReservationBenchmarks.allocateRelease(env), contentionThreads, filter, results);
+            run(runner, ReservationBenchmarks.allocateReleaseLegs(env), contentionThreads, filter, results);
+            run(runner, ReservationBenchmarks.holdRelease(env), contentionThreads, filter, results);
+            run(runner, ReservationBenchmarks.holdReleaseBatch(env), contentionThreads, filter, results);
+            for (boolean remote : new boolean[]{false, true}) {
+                run(runner, BookingBenchmarks.book(env, remote), bookingThreads, filter, results);
+                run(runner, BookingBenchmarks.cancel(env, remote), bookingThreads, filter, results);
+            }
+            for (Benchmark benchmark : SerializationBenchmark.all()) {
+                run(runner, benchmark, new int[]{1}, filter, results);
+            }
+            run(runner, FareBenchmark.quote(), new int[]{1}, filter, results);
+            if ("search.trains".contains(filter)) {
+                run(runner, SearchBenchmark.search(env), new int[]{1}, filter, results);
+            }
+            run(runner, LedgerReplayBenchmark.replay(), new int[]{1}, filter, results);
+        }
+
+        String output = format(results, System.getProperty("bench.format", "csv"));
+        stdout.println(output);
+        String outFile = System.getProperty("bench.out");
+        if (outFile != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(outFile))) {
+                writer.println(output);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void run(BenchmarkRunner runner, Benchmark benchmark, int[] threadCounts, String filter,
+                            List<BenchmarkResult> results) throws Exception {
+        if (!benchmark.name().contains(filter)) {
+            return;
+        }
+        for (int threads : threadCounts) {
+            BenchmarkResult result = runner.run(benchmark, threads);
+            // Progress goes to stderr so stdout stays machine-readable
+            System.err.println(result.toCsv());
+            results.add(result);
+        }
+    }
+
+    static String format(List<BenchmarkResult> results, String format) {
+        StringBuilder sb = new StringBuilder();
+        if (format.equals("json")) {
+            sb.append("[");
+            for (int i = 0; i < results.size(); i++) {
+                sb.append(i == 0 ? "\n  " : ",\n  ").append(results.get(i).toJson());
+            }
+            return sb.append("\n]").toString();
+        }
+        sb.append(BenchmarkResult.CSV_HEADER);
+        for (BenchmarkResult result : results) {
+            sb.append('\n').append(result.toCsv());
+        }
+        return sb.toString();
+    }
+
+    private static int[] threadCounts(String property, String defaults) {
+        String[] parts = System.getProperty(property, defaults).split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import search.RouteCatalog;
+import search.SearchServiceImpl;
+import search.TrainRoute;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Station-pair searches over a generated network, called on the search service directly so
+// the result is the index lookup and availability join alone. Every query is a pair some
+// train really serves, drawn from four weeks of dates.
+//
+//   java -cp bin -Dbench.searchTrains=20000 bench.SearchBenchmark
+public class SearchBenchmark {
+    private static final int QUERIES = 4096;
+    private static final int DAYS = 28;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        try (BenchEnvironment env = new BenchEnvironment()) {
+            System.out.println(runner.run(search(env), 1).toCsv());
+        }
+        System.exit(0);
+    }
+
+    public static Benchmark search(BenchEnvironment env) throws Exception {
+        List<TrainRoute> routes = RouteCatalog.synthetic(Integer.getInteger("bench.searchTrains", 5000),
+            Integer.getInteger("bench.searchStations", 1000), 42);
+        for (TrainRoute route : routes) {
+            env.reservationService.registerTrain(route.config);
+        }
+        List<TrainRoute> indexed = new ArrayList<>(RouteCatalog.defaults());
+        indexed.addAll(routes);
+        SearchServiceImpl searchService = new SearchServiceImpl(indexed);
+
+        Random random = new Random(7);
+        String[] from = new String[QUERIES];
+        String[] to = new String[QUERIES];
+        LocalDate[] dates = new LocalDate[QUERIES];
+        for (int q = 0; q < QUERIES; q++) {
+            TrainRoute route = routes.get(random.nextInt(routes.size()));
+            int first = random.nextInt(route.stations.length - 1);
+            from[q] = route.stations[first];
+            to[q] = route.stations[first + 1 + random.nextInt(route.stations.length - first - 1)];
+            dates[q] = LocalDate.now().plusDays(random.nextInt(DAYS));
+        }
+        return new Benchmark() {
+            @Override
+            public String name() {
+                return "search.trains";
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return Integer.getInteger("bench.ops", 100_000);
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                int q = index % QUERIES;
+                searchService.searchTrains(from[q], to[q], dates[q]);
+            }
+        };
+    }
+}
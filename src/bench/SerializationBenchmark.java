@@ -0,0 +1,105 @@
+package bench;
+
+import common.BookingRequest;
+import common.BookingStatus;
+import common.IIRCTCService;
+import common.SeatAllocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+// Compares the hand-written BookingDetails wire format against the default serialization it
+// replaced. Each round trip uses fresh object streams, the way RMI marshals a single call, so
+// class descriptors are paid for every time.
+//
+//   java -cp bin bench.SerializationBenchmark
+public class SerializationBenchmark {
+    // The previous shape of BookingDetails, kept here only as the baseline
+    static class LegacyBookingDetails implements Serializable {
+        private static final long serialVersionUID = 4L;
+        public long bookingId;
+        public int numSeats;
+        public double amount;
+        public volatile String status;
+        public int trainNumber;
+        public LocalDate journeyDate;
+        public String travelClass;
+        public SeatAllocation seats;
+        public String userId;
+        public int totalSeats;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromSystemProperties();
+        for (Benchmark benchmark : all()) {
+            System.out.println(runner.run(benchmark, 1).toCsv());
+        }
+    }
+
+    public static List<Benchmark> all() {
+        LocalDate date = LocalDate.now().plusDays(7);
+        SeatAllocation seats = new SeatAllocation(12951, date, "3A",
+            new int[]{1, 1, 1, 1}, new int[]{10, 11, 12, 13});
+
+        IIRCTCService.BookingDetails compact = new IIRCTCService.BookingDetails(
+            12345678901L, new BookingRequest(12951, date, "3A", 4, "user42"), 4 * 100_00L);
+        compact.status = BookingStatus.CONFIRMED;
+        compact.seats = seats;
+
+        LegacyBookingDetails legacy = new LegacyBookingDetails();
+        legacy.bookingId = compact.bookingId;
+        legacy.numSeats = legacy.totalSeats = 4;
+        legacy.amount = 400.0;
+        legacy.status = "CONFIRMED";
+        legacy.trainNumber = 12951;
+        legacy.journeyDate = date;
+        legacy.travelClass = "3A";
+        legacy.seats = seats;
+        legacy.userId = "user42";
+
+        return List.of(roundTrip("serialization.default", legacy), roundTrip("serialization.externalizable", compact));
+    }
+
+    // The benchmark name carries the encoded size, e.g. serialization.default[555B]
+    private static Benchmark roundTrip(String name, Object value) {
+        return new Benchmark() {
+            @Override
+            public String name() {
+                try {
+                    return name + "[" + serialize(value).length + "B]";
+                } catch (IOException e) {
+                    return name;
+                }
+            }
+
+            @Override
+            public int operationsPerIteration() {
+                return Integer.getInteger("bench.ops", 50_000);
+            }
+
+            @Override
+            public void operation(int index) throws Exception {
+                deserialize(serialize(value));
+            }
+        };
+    }
+
+    static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(value);
+        }
+        return buffer.toByteArray();
+    }
+
+    static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package booking;
+
+import common.Log;
+import common.OverloadException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Caps the bookings in progress per train. Up to the train's limit run at once, up to
+// queueCapacity more wait at most maxWaitMillis for a slot, and anything beyond that is turned
+// away immediately with an OverloadException carrying a retry-after hint. Rejecting early keeps
+// the admitted requests fast instead of letting every request slow down together.
+//
+// The limit adapts to latency (additive increase, multiplicative decrease): after each window
+// of completions it grows by one if the average stayed under the target while the limit was
+// actually reached, and shrinks by a quarter if the average went over the target.
+public class AdmissionController {
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final long targetLatencyNanos;
+    private final Map<Integer, Gate> gates = new ConcurrentHashMap<>();
+
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit, int queueCapacity,
+                               long maxWaitMillis, long targetLatencyMillis) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+    }
+
+    // Configured from irctc.admission.* ; irctc.admission.enabled=false turns it off (returns null)
+    public static AdmissionController fromSystemProperties() {
+        if ("false".equals(System.getProperty("irctc.admission.enabled"))) {
+            return null;
+        }
+        return new AdmissionController(
+            Integer.getInteger("irctc.admission.initialLimit", 32),
+            Integer.getInteger("irctc.admission.minLimit", 4),
+            Integer.getInteger("irctc.admission.maxLimit", 256),
+            Integer.getInteger("irctc.admission.queueCapacity", 64),
+            Long.getLong("irctc.admission.maxWaitMillis", 1000),
+            Long.getLong("irctc.admission.targetLatencyMillis", 1000));
+    }
+
+    // Blocks for at most maxWaitMillis. The caller must release the returned permit exactly once.
+    public Permit acquire(int trainNumber) throws OverloadException {
+        Gate gate = gates.computeIfAbsent(trainNumber, Gate::new);
+        gate.acquire();
+        return new Permit(gate, System.nanoTime());
+    }
+
+    public int currentLimit(int trainNumber) {
+        Gate gate = gates.get(trainNumber);
+        return gate == null ? initialLimit : gate.limit;
+    }
+
+    public final class Permit {
+        private final Gate gate;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(Gate gate, long startNanos) {
+            this.gate = gate;
+            this.startNanos = startNanos;
+        }
+
+        public void release() {
+            if (!released) {
+                released = true;
+                gate.release(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private final class Gate {
+        private final int trainNumber;
+        // A j.u.c lock so waiters park cleanly on virtual threads
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition slotFreed = lock.newCondition();
+        private volatile int limit = initialLimit;
+        private int inFlight;
+        private int waiting;
+        // Current adaptation window
+        private int windowCount;
+        private long windowNanos;
+        private boolean windowSaturated;
+        // Smoothed latency, used for the retry-after hint
+        private long averageNanos = targetLatencyNanos;
+
+        Gate(int trainNumber) {
+            this.trainNumber = trainNumber;
+        }
+
+        void acquire() throws OverloadException {
+            lock.lock();
+            try {
+                if (inFlight < limit) {
+                    admit();
+                    return;
+                }
+                if (waiting >= queueCapacity) {
+                    throw overloaded();
+                }
+                waiting++;
+                try {
+                    long remaining = maxWaitNanos;
+                    while (inFlight >= limit) {
+                        if (remaining <= 0) {
+                            throw overloaded();
+                        }
+                        remaining = slotFreed.awaitNanos(remaining);
+                    }
+                    admit();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw overloaded();
+                } finally {
+                    waiting--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void admit() {
+            inFlight++;
+            if (inFlight >= limit) {
+                windowSaturated = true;
+            }
+        }
+
+        void release(long latencyNanos) {
+            lock.lock();
+            try {
+                inFlight--;
+                averageNanos += (latencyNanos - averageNanos) / 8;
+                windowNanos += latencyNanos;
+                if (++windowCount >= Math.max(limit, 10)) {
+                    adapt(windowNanos / windowCount);
+                }
+                slotFreed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adapt(long windowAverageNanos) {
+            int previous = limit;
+            if (windowAverageNanos > targetLatencyNanos) {
+                limit = Math.max(minLimit, limit - Math.max(1, limit / 4));
+            } else if (windowSaturated) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            windowCount = 0;
+            windowNanos = 0;
+            windowSaturated = inFlight >= limit;
+            if (limit != previous) {
+                if (Log.isEnabled(Log.Level.DEBUG)) {
+                    Log.debug("Admission: train " + trainNumber + " limit " + previous + " -> " + limit
+                        + " (window average " + TimeUnit.NANOSECONDS.toMillis(windowAverageNanos) + " ms)");
+                }
+                if (limit > previous) {
+                    slotFreed.signal();
+                }
+            }
+        }
+
+        // Roughly how long until the requests ahead of this one have drained
+        private OverloadException overloaded() {
+            long drainNanos = averageNanos * (waiting + 1) / Math.max(1, limit);
+            long retryAfter = Math.max(100, Math.min(10_000, TimeUnit.NANOSECONDS.toMillis(drainNanos)));
+            return new OverloadException("Train " + trainNumber + " is busy, retry in " + retryAfter + " ms", retryAfter);
+        }
+    }
+}
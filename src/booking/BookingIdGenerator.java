@@ -0,0 +1,74 @@
+package booking;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Snowflake-style booking ids: 41 bits of milliseconds since EPOCH, 10 bits of node id and
+// 12 bits of sequence. Every node owns the block of 4096 ids of each millisecond outright,
+// so several booking servers can mint ids without talking to each other, and ids still sort
+// roughly by booking time.
+//
+// The millisecond and sequence are kept together in one AtomicLong, so handing out an id is a
+// single CAS. A burst of more than 4096 ids in one millisecond borrows the next millisecond's
+// block instead of waiting for the clock.
+public class BookingIdGenerator {
+    private static final long EPOCH = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private final long nodeId;
+    // (millis since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong last;
+
+    public BookingIdGenerator(int nodeId, long lastIssuedId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        // Never hand out anything at or below what this node issued before a restart,
+        // even if the clock went backwards in between
+        this.last = new AtomicLong(((lastIssuedId >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS)
+            | (lastIssuedId & SEQUENCE_MASK));
+    }
+
+    public long nextId() {
+        return compose(lease(1));
+    }
+
+    // Leases count consecutive ids in one CAS, for batch bookings
+    public long[] nextIds(int count) {
+        long first = lease(count);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = compose(first + i);
+        }
+        return ids;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    // Returns the first of count reserved local values
+    private long lease(int count) {
+        while (true) {
+            long current = last.get();
+            long floor = (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS;
+            long first = Math.max(current + 1, floor);
+            if (last.compareAndSet(current, first + count - 1)) {
+                return first;
+            }
+        }
+    }
+
+    private long compose(long local) {
+        return ((local >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS))
+            | (nodeId << SEQUENCE_BITS)
+            | (local & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,51 @@
+package booking;
+
+import common.IBookingListener;
+import common.IIRCTCService;
+import common.Log;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Pushes changes to a user's bookings to the clients that user has subscribed. Pushes run on
+// their own threads so a slow or vanished client never holds up the booking path; a client
+// whose push fails is dropped and has to subscribe again.
+class BookingNotifier {
+    private final Map<String, Set<IBookingListener>> listeners = new ConcurrentHashMap<>();
+    private final ExecutorService pushers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "booking-push");
+        t.setDaemon(true);
+        return t;
+    });
+
+    void subscribe(String userId, IBookingListener listener) {
+        listeners.computeIfAbsent(userId, user -> ConcurrentHashMap.newKeySet()).add(listener);
+    }
+
+    void unsubscribe(String userId, IBookingListener listener) {
+        Set<IBookingListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            userListeners.remove(listener);
+        }
+    }
+
+    void bookingChanged(IIRCTCService.BookingDetails booking) {
+        Set<IBookingListener> userListeners = booking.userId == null ? null : listeners.get(booking.userId);
+        if (userListeners == null) {
+            return;
+        }
+        for (IBookingListener listener : userListeners) {
+            pushers.execute(() -> {
+                try {
+                    listener.bookingChanged(booking);
+                } catch (RemoteException e) {
+                    Log.debug("BookingNotifier: Dropping listener for " + booking.userId + ": " + e.getMessage());
+                    userListeners.remove(listener);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package booking;
+
+import common.BookingPage;
+import common.BookingStatus;
+import common.IIRCTCService;
+import common.Log;
+import ledger.BookingLedger;
+import ledger.LedgerState;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Server-side home of every booking. Bookings are stored by id, with secondary indexes by user
+// and by status. Each index is a sorted set of ids, newest first, so a page is a range scan
+// from the cursor rather than a walk over the whole history. Bookings waiting for seats are
+// also queued in the waitlist.
+//
+// Every change to a booking goes through here and is written to the ledger as an event before
+// it is applied, so the ledger alone is enough to rebuild the repository after a restart.
+public class BookingRepository {
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final Map<Long, IIRCTCService.BookingDetails> byId = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> allIds = newIndex();
+    private final Map<String, NavigableSet<Long>> byUser = new ConcurrentHashMap<>();
+    private final Map<BookingStatus, NavigableSet<Long>> byStatus = newStatusIndexes();
+    // Status each booking is currently indexed under
+    private final Map<Long, BookingStatus> indexedStatus = new ConcurrentHashMap<>();
+    private final Waitlist waitlist = Waitlist.fromSystemProperties();
+    private final BookingLedger ledger;
+
+    public BookingRepository(BookingLedger ledger) {
+        this.ledger = ledger;
+        restore(ledger.recoveredState());
+    }
+
+    public IIRCTCService.BookingDetails get(long bookingId) {
+        return byId.get(bookingId);
+    }
+
+    // Records a new booking in its first status, PENDING or WAITLISTED, and returns the
+    // ledger sequence to wait on
+    public long create(IIRCTCService.BookingDetails booking) throws IOException {
+        long sequence = ledger.created(booking);
+        index(booking);
+        return sequence;
+    }
+
+    // Confirms the booking with the seats already set on it
+    public long confirm(IIRCTCService.BookingDetails booking) throws IOException {
+        long sequence = ledger.booked(booking);
+        booking.status = BookingStatus.CONFIRMED;
+        reindexStatus(booking);
+        return sequence;
+    }
+
+    // Takes numSeats seats off the end of the booking and their share of what was paid, sharePaise,
+    // off its amount; the refund itself may be less after cancellation charges. The caller has
+    // already given the seats back to inventory.
+    public long cancelSeats(IIRCTCService.BookingDetails booking, int numSeats, long sharePaise) throws IOException {
+        long sequence = ledger.cancelled(booking, numSeats, sharePaise);
+        if (booking.seats != null) {
+            booking.seats = booking.seats.first(booking.numSeats - numSeats);
+        }
+        booking.amountPaise -= sharePaise;
+        booking.numSeats -= numSeats;
+        booking.status = booking.numSeats == 0 ? BookingStatus.CANCELLED : BookingStatus.PARTIALLY_CANCELLED;
+        reindexStatus(booking);
+        return sequence;
+    }
+
+    // Bookings whose seats are taken in inventory right now: confirmed and partly cancelled
+    // ones, and paid ones that already have their seats
+    public List<IIRCTCService.BookingDetails> holdingSeats() {
+        List<IIRCTCService.BookingDetails> holding = new ArrayList<>();
+        for (BookingStatus status : new BookingStatus[]{BookingStatus.CONFIRMED, BookingStatus.PARTIALLY_CANCELLED,
+                BookingStatus.PAID}) {
+            for (long bookingId : byStatus.get(status)) {
+                IIRCTCService.BookingDetails booking = byId.get(bookingId);
+                if (booking != null && booking.numSeats > 0 && (status != BookingStatus.PAID || booking.seats != null)) {
+                    holding.add(booking);
+                }
+            }
+        }
+        return holding;
+    }
+
+    // Takes a waitlisted booking out of the queue and cancels it; it never held seats or paid.
+    // False if it is no longer waiting, i.e. it was promoted a moment ago.
+    public boolean withdraw(IIRCTCService.BookingDetails booking) {
+        if (!waitlist.remove(booking)) {
+            return false;
+        }
+        booking.numSeats = 0;
+        updateStatus(booking, BookingStatus.CANCELLED);
+        return true;
+    }
+
+    private void index(IIRCTCService.BookingDetails booking) {
+        if (byId.put(booking.bookingId, booking) == null) {
+            allIds.add(booking.bookingId);
+            if (booking.userId != null) {
+                byUser.computeIfAbsent(booking.userId, user -> newIndex()).add(booking.bookingId);
+            }
+        }
+        reindexStatus(booking);
+    }
+
+    // Moves the booking to a new status and keeps the status index in step. For transitions
+    // nobody waits on, so a ledger failure surfaces unchecked; confirmation and cancellation
+    // have their own methods.
+    public void updateStatus(IIRCTCService.BookingDetails booking, BookingStatus status) {
+        try {
+            ledger.statusChanged(booking.bookingId, status);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Booking " + booking.bookingId + " could not be recorded", e);
+        }
+        booking.status = status;
+        reindexStatus(booking);
+    }
+
+    // userId and status are optional filters; cursor 0 starts from the newest booking
+    public BookingPage page(String userId, BookingStatus status, long cursor, int pageSize) {
+        int limit = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        NavigableSet<Long> index;
+        boolean filterStatus = false;
+        if (userId != null) {
+            index = byUser.getOrDefault(userId, Collections.emptyNavigableSet());
+            filterStatus = status != null;
+        } else if (status != null) {
+            index = byStatus.get(status);
+        } else {
+            index = allIds;
+        }
+
+        List<IIRCTCService.BookingDetails> bookings = new ArrayList<>(limit);
+        long last = 0;
+        // The index is newest first, so tailSet holds the ids older than the cursor
+        for (long id : cursor == 0 ? index : index.tailSet(cursor, false)) {
+            IIRCTCService.BookingDetails booking = byId.get(id);
+            if (booking == null || (filterStatus && booking.status != status)) {
+                continue;
+            }
+            if (bookings.size() == limit) {
+                return new BookingPage(bookings, last);
+            }
+            bookings.add(booking);
+            last = id;
+        }
+        return new BookingPage(bookings, 0);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    // Bookings with status WAITLISTED, in the order they will be offered seats
+    public Waitlist waitlist() {
+        return waitlist;
+    }
+
+    // Takes over the bookings projected from the ledger. A booking caught between hold and
+    // confirmation lost its hold in the restart, so it is failed; waitlisted bookings queue
+    // again in their original order.
+    private void restore(LedgerState recovered) {
+        int interrupted = 0;
+        for (IIRCTCService.BookingDetails booking : recovered.bookings.values()) {
+            index(booking);
+            if (booking.status == BookingStatus.PENDING || booking.status == BookingStatus.PAID) {
+                if (booking.status == BookingStatus.PAID) {
+                    Log.warn("BookingRepository: Booking " + booking.bookingId + " was paid but not confirmed before the restart, refund it manually");
+                }
+                updateStatus(booking, BookingStatus.FAILED);
+                interrupted++;
+            } else if (booking.status == BookingStatus.WAITLISTED && waitlist.add(booking) == 0) {
+                updateStatus(booking, BookingStatus.FAILED); // The waitlist limit was lowered
+            }
+        }
+        if (!recovered.bookings.isEmpty()) {
+            Log.info("BookingRepository: Restored " + recovered.bookings.size() + " bookings, "
+                + interrupted + " interrupted by the restart marked FAILED");
+        }
+    }
+
+    private void reindexStatus(IIRCTCService.BookingDetails booking) {
+        synchronized (booking) {
+            BookingStatus status = booking.status;
+            BookingStatus previous = indexedStatus.put(booking.bookingId, status);
+            if (status == previous) {
+                return;
+            }
+            if (previous != null) {
+                byStatus.get(previous).remove(booking.bookingId);
+            }
+            byStatus.get(status).add(booking.bookingId);
+        }
+    }
+
+    // One index per status, created up front so the map itself is never written after construction
+    private static Map<BookingStatus, NavigableSet<Long>> newStatusIndexes() {
+        Map<BookingStatus, NavigableSet<Long>> indexes = new EnumMap<>(BookingStatus.class);
+        for (BookingStatus status : BookingStatus.values()) {
+            indexes.put(status, newIndex());
+        }
+        return indexes;
+    }
+
+    private static NavigableSet<Long> newIndex() {
+        return new ConcurrentSkipListSet<>(Collections.reverseOrder());
+    }
+}
@@ -1,69 +1,640 @@
 package booking;
 
+import common.AvailabilitySnapshot;
+import common.BookingPage;
+import common.BookingRequest;
+import common.BookingResult;
+import common.BookingStatus;
+import common.FareQuote;
+import common.IAvailabilityListener;
+import common.IBookingListener;
 import common.IIRCTCService;
+import common.Log;
+import common.ServiceExecutors;
+import common.ServiceLocator;
+import common.SeatAllocation;
+import common.SeatHold;
+import fare.FareEngine;
+import ledger.BookingLedger;
 import reservation.IReservationService;
 import payment.IPaymentService;
+import payment.PaymentPipeline;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class BookingServiceImpl extends UnicastRemoteObject implements IBookingService {
-    private static int bookingCounter = 1;
+    private final BookingIdGenerator idGenerator;
     private IReservationService reservationService;
     private IPaymentService paymentService;
-    private static final int MAX_RETRIES = 5;
-    private static final long RETRY_DELAY = 1000; // 1 second
+    private final BookingLedger ledger;
+    private PaymentPipeline paymentPipeline;
+    // Seat commit and ledger flush once a payment is settled. Kept off the payment workers, so
+    // a worker is free for the next payment as soon as the gateway answers, and off the JDK's
+    // one shared thread that fails payments which timed out.
+    private final ExecutorService completions = ServiceExecutors.newWorkerPool("booking-completion",
+        Integer.getInteger("irctc.booking.completionThreads", 16));
+    private final BookingRepository repository;
+    private final FareEngine fares;
+    // Null when admission control is switched off
+    private final AdmissionController admission = AdmissionController.fromSystemProperties();
+    private final Waitlist waitlist;
+    private final BookingNotifier notifier = new BookingNotifier();
+    // One thread, so promotions never race each other for the same freed seats
+    private final ScheduledExecutorService promoter = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-promoter");
+        t.setDaemon(true);
+        return t;
+    });
+    // Null unless burst windows are configured
+    private BurstMode burst;
+    private final Set<String> promotionsDue = ConcurrentHashMap.newKeySet();
+    private static final long WAITLIST_SWEEP_MILLIS = Long.getLong("irctc.waitlist.sweepMillis", 1000);
 
-    public BookingServiceImpl() throws RemoteException {
+    public BookingServiceImpl(BookingLedger ledger, BookingRepository repository, FareEngine fares, int nodeId)
+            throws RemoteException {
         super();
+        this.ledger = ledger;
+        this.repository = repository;
+        this.fares = fares;
+        this.waitlist = repository.waitlist();
+        // Carry on numbering after the last booking that made it into the ledger
+        this.idGenerator = new BookingIdGenerator(nodeId, ledger.recoveredState().maxBookingId);
         initializeServices();
+        if (paymentService != null) {
+            paymentPipeline = PaymentPipeline.fromSystemProperties(paymentService);
+        }
+        if (reservationService != null && paymentPipeline != null) {
+            burst = BurstMode.fromSystemProperties(reservationService, paymentPipeline::warmUp);
+        }
+        startWaitlistPromotion();
     }
 
     private void initializeServices() {
-        for (int i = 0; i < MAX_RETRIES; i++) {
-            try {
-                Registry registry = LocateRegistry.getRegistry("localhost", 1099);
-                reservationService = (IReservationService) registry.lookup("ReservationService");
-                paymentService = (IPaymentService) registry.lookup("PaymentService");
-                
-                if (reservationService != null && paymentService != null) {
-                    System.out.println("BookingService successfully connected to dependencies");
-                    return;
+        // Co-located dependencies are called directly, the rest through stubs that reconnect by themselves
+        ServiceLocator locator = ServiceLocator.shared();
+        try {
+            reservationService = locator.lookup("ReservationService", IReservationService.class);
+            paymentService = locator.lookup("PaymentService", IPaymentService.class);
+        } catch (RemoteException e) {
+            Log.warn("BookingService: Failed to initialize services: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public IIRCTCService.BookingDetails bookTicket(int numSeats) throws RemoteException {
+        return bookTicket(new BookingRequest(IReservationService.DEFAULT_TRAIN, null,
+            IReservationService.DEFAULT_CLASS, numSeats));
+    }
+
+    @Override
+    public IIRCTCService.BookingDetails bookTicket(BookingRequest request) throws RemoteException {
+        try {
+            return admitted(newBooking(idGenerator.nextId(), request), request.waitlistIfFull).get();
+        } catch (ExecutionException e) {
+            throw asRemoteException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while booking");
+        }
+    }
+
+    @Override
+    public IIRCTCService.BookingDetails submitBooking(BookingRequest request) throws RemoteException {
+        IIRCTCService.BookingDetails booking = newBooking(idGenerator.nextId(), request);
+        admitted(booking, request.waitlistIfFull);
+        return booking;
+    }
+
+    // Starts the booking under an admission permit for its train, held until the booking
+    // completes either way. Over the limit this throws OverloadException before anything is held.
+    private CompletableFuture<IIRCTCService.BookingDetails> admitted(IIRCTCService.BookingDetails booking,
+                                                                     boolean waitlistIfFull) throws RemoteException {
+        if (admission == null) {
+            return startBooking(booking, waitlistIfFull);
+        }
+        AdmissionController.Permit permit = admission.acquire(booking.trainNumber);
+        CompletableFuture<IIRCTCService.BookingDetails> result;
+        try {
+            result = startBooking(booking, waitlistIfFull);
+        } catch (RemoteException | RuntimeException e) {
+            permit.release();
+            throw e;
+        }
+        return result.whenComplete((done, error) -> permit.release());
+    }
+
+    @Override
+    public IIRCTCService.BookingDetails getBooking(long bookingId) throws RemoteException {
+        IIRCTCService.BookingDetails booking = repository.get(bookingId);
+        if (booking == null) {
+            throw new RemoteException("Unknown booking " + bookingId);
+        }
+        return booking;
+    }
+
+    @Override
+    public BookingPage getBookings(String userId, BookingStatus status, long cursor, int pageSize) throws RemoteException {
+        return repository.page(userId, status, cursor, pageSize);
+    }
+
+    @Override
+    public FareQuote quote(int trainNumber, LocalDate journeyDate, String travelClass, String quota, int numSeats)
+            throws RemoteException {
+        if (numSeats <= 0) {
+            throw new RemoteException("Invalid number of seats " + numSeats);
+        }
+        try {
+            return fares.quote(trainNumber, journeyDate, travelClass, quota, numSeats);
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    @Override
+    public int getWaitlistPosition(long bookingId) throws RemoteException {
+        return waitlist.position(bookingId);
+    }
+
+    @Override
+    public void subscribe(String userId, IBookingListener listener) throws RemoteException {
+        notifier.subscribe(userId, listener);
+    }
+
+    @Override
+    public void unsubscribe(String userId, IBookingListener listener) throws RemoteException {
+        notifier.unsubscribe(userId, listener);
+    }
+
+    // Takes the seat hold and hands the payment to the pipeline. The booking moves
+    // PENDING -> PAID -> CONFIRMED, or to FAILED, when the payment result arrives, and the
+    // returned future completes at that point. A sold-out booking that asked for it is
+    // returned WAITLISTED instead.
+    private CompletableFuture<IIRCTCService.BookingDetails> startBooking(IIRCTCService.BookingDetails booking,
+                                                                         boolean waitlistIfFull) throws RemoteException {
+        checkInitialized();
+        if (booking.numSeats <= 0) {
+            throw new RemoteException("Invalid number of seats " + booking.numSeats);
+        }
+
+        // Take the seats first so the payment round trip happens outside any race window
+        SeatHold hold = burst != null && burst.isActive() ? burst.hold(booking)
+            : reservationService.holdSeats(booking.trainNumber, booking.journeyDate, booking.travelClass,
+                booking.numSeats, booking.legs);
+        if (hold == null) {
+            if (!waitlistIfFull) {
+                throw new RemoteException("Not enough seats available");
+            }
+            String refusal = waitlistRefusal(booking);
+            if (refusal != null) {
+                throw new RemoteException(refusal);
+            }
+            if (!joinWaitlist(booking)) {
+                throw new RemoteException("Not enough seats available and the waitlist is full");
+            }
+            return CompletableFuture.completedFuture(booking);
+        }
+        try {
+            repository.create(booking);
+        } catch (IOException e) {
+            reservationService.releaseHold(hold);
+            throw new RemoteException("Booking could not be recorded", e);
+        }
+        return paymentPipeline.submit(booking)
+            .handleAsync((paid, error) -> finishBooking(booking, hold, paid, error), completions);
+    }
+
+    // Why the booking can never be confirmed from the waitlist, or null if it can. The queue is
+    // first come, first served, so a booking that can never fit would hold up the pool for good.
+    private String waitlistRefusal(IIRCTCService.BookingDetails booking) throws RemoteException {
+        if (booking.numSeats <= 0) {
+            return "Invalid number of seats " + booking.numSeats;
+        }
+        int capacity = reservationService.getCapacity(booking.trainNumber, booking.travelClass);
+        if (capacity < 0) {
+            return "Train " + booking.trainNumber + " has no class " + booking.travelClass;
+        }
+        if (booking.numSeats > capacity) {
+            return "The class has only " + capacity + " seats, too few for " + booking.numSeats;
+        }
+        return null;
+    }
+
+    // Nothing is charged while a booking waits; payment is taken when it is promoted. False if
+    // the pool's waitlist is full. Returns once the booking is durable, so a waitlisted booking
+    // survives a restart.
+    private boolean joinWaitlist(IIRCTCService.BookingDetails booking) throws RemoteException {
+        booking.status = BookingStatus.WAITLISTED;
+        if (waitlist.add(booking) == 0) {
+            booking.status = BookingStatus.FAILED;
+            return false;
+        }
+        try {
+            ledger.awaitDurable(repository.create(booking));
+        } catch (IOException e) {
+            waitlist.remove(booking);
+            booking.status = BookingStatus.FAILED;
+            throw new RemoteException("Booking could not be recorded", e);
+        }
+        // Seats may have come back between the failed hold and joining the queue
+        schedulePromotion(Waitlist.poolOf(booking));
+        return true;
+    }
+
+    // Seats coming back show up on the availability stream, which wakes the promoter for any
+    // pool with bookings waiting. A periodic sweep covers pushes that were dropped.
+    private void startWaitlistPromotion() {
+        promoter.scheduleWithFixedDelay(() -> {
+            for (String pool : waitlist.waitingPools()) {
+                schedulePromotion(pool);
+            }
+        }, WAITLIST_SWEEP_MILLIS, WAITLIST_SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+        if (reservationService == null) {
+            return;
+        }
+        try {
+            WaitlistTrigger trigger = new WaitlistTrigger();
+            UnicastRemoteObject.exportObject(trigger, 0);
+            reservationService.subscribe(trigger);
+        } catch (RemoteException e) {
+            Log.warn("BookingService: No availability updates, waitlist relies on the sweep: " + e.getMessage());
+        }
+    }
+
+    private class WaitlistTrigger implements IAvailabilityListener {
+        @Override
+        public void availabilityChanged(AvailabilitySnapshot delta) {
+            for (int i = 0; i < delta.pools.length; i++) {
+                if (delta.available[i] > 0 && waitlist.size(delta.pools[i]) > 0) {
+                    schedulePromotion(delta.pools[i]);
                 }
-            } catch (Exception e) {
-                System.err.println("Attempt " + (i + 1) + " to connect to services failed");
-                try {
-                    Thread.sleep(RETRY_DELAY);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void schedulePromotion(String pool) {
+        if (promotionsDue.add(pool)) {
+            promoter.execute(() -> {
+                promotionsDue.remove(pool);
+                promote(pool);
+            });
+        }
+    }
+
+    // Offers freed seats to the front of the queue in order, as one batch. Stops at the first
+    // booking that does not fit, so a smaller booking further back never overtakes it. Each
+    // promoted booking then goes through payment like a new one and its user is told the outcome.
+    private void promote(String pool) {
+        int promoted = 0;
+        try {
+            IIRCTCService.BookingDetails next;
+            while ((next = waitlist.head(pool)) != null) {
+                SeatHold hold = reservationService.holdSeats(next.trainNumber, next.journeyDate,
+                    next.travelClass, next.numSeats, next.legs);
+                if (hold == null) {
+                    break;
+                }
+                if (!waitlist.remove(next)) {
+                    // Cancelled while the seats were being held
+                    reservationService.releaseHold(hold);
+                    continue;
                 }
+                IIRCTCService.BookingDetails booking = next;
+                repository.updateStatus(booking, BookingStatus.PENDING);
+                paymentPipeline.submit(booking)
+                    .handleAsync((paid, error) -> finishBooking(booking, hold, paid, error), completions)
+                    .whenComplete((done, error) -> notifier.bookingChanged(booking));
+                promoted++;
+            }
+        } catch (RemoteException e) {
+            Log.warn("Waitlist: Promotion on " + pool + " stopped, will retry: " + e.getMessage());
+        }
+        if (promoted > 0) {
+            Log.info("Waitlist: Promoted " + promoted + " bookings on " + pool + ", "
+                + waitlist.size(pool) + " still waiting");
+        }
+    }
+
+    private IIRCTCService.BookingDetails finishBooking(IIRCTCService.BookingDetails booking, SeatHold hold,
+                                                      Boolean paid, Throwable error) {
+        try {
+            if (error != null || !paid) {
+                reservationService.releaseHold(hold);
+                repository.updateStatus(booking, BookingStatus.FAILED);
+                throw new CompletionException(new RemoteException(error == null
+                    ? "Payment failed" : "Payment failed: " + describe(error)));
+            }
+            repository.updateStatus(booking, BookingStatus.PAID);
+
+            try {
+                booking.seats = reservationService.commitHold(hold);
+            } catch (RemoteException e) {
+                // The hold lapsed while the payment was running, give the money back
+                paymentService.processRefund(booking);
+                repository.updateStatus(booking, BookingStatus.FAILED);
+                throw new CompletionException(new RemoteException("Seat hold expired before payment completed"));
+            }
+
+            try {
+                record(List.of(booking));
+            } catch (RemoteException e) {
+                reservationService.releaseSeats(booking.seats);
+                paymentService.processRefund(booking);
+                throw e;
             }
+            return booking;
+        } catch (RemoteException e) {
+            repository.updateStatus(booking, BookingStatus.FAILED);
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String describe(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "timed out";
         }
-        System.err.println("Failed to initialize services after " + MAX_RETRIES + " attempts");
+        return cause.getMessage();
+    }
+
+    private static RemoteException asRemoteException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RemoteException) {
+            return (RemoteException) cause;
+        }
+        return new RemoteException("Booking failed: " + cause.getMessage(), cause);
     }
 
     @Override
-    public IIRCTCService.BookingDetails bookTicket(int numSeats) throws RemoteException {
+    public List<BookingResult> bookTickets(List<BookingRequest> requests) throws RemoteException {
+        checkInitialized();
+        List<AdmissionController.Permit> permits = admitBatch(requests);
+        try {
+            return bookBatch(requests);
+        } finally {
+            for (AdmissionController.Permit permit : permits) {
+                permit.release();
+            }
+        }
+    }
+
+    // One permit per train in the batch, taken in train order; all or nothing
+    private List<AdmissionController.Permit> admitBatch(List<BookingRequest> requests) throws RemoteException {
+        List<AdmissionController.Permit> permits = new ArrayList<>();
+        if (admission == null) {
+            return permits;
+        }
+        TreeSet<Integer> trains = new TreeSet<>();
+        for (BookingRequest request : requests) {
+            trains.add(request.trainNumber);
+        }
+        try {
+            for (int train : trains) {
+                permits.add(admission.acquire(train));
+            }
+        } catch (RemoteException e) {
+            for (AdmissionController.Permit permit : permits) {
+                permit.release();
+            }
+            throw e;
+        }
+        return permits;
+    }
+
+    private List<BookingResult> bookBatch(List<BookingRequest> requests) throws RemoteException {
+        BookingResult[] results = new BookingResult[requests.size()];
+        long[] ids = idGenerator.nextIds(requests.size());
+        IIRCTCService.BookingDetails[] bookings = new IIRCTCService.BookingDetails[results.length];
+
+        // An item that cannot be priced fails on its own, before any seat is held for it
+        List<BookingRequest> priced = new ArrayList<>();
+        List<Integer> pricedIndexes = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            try {
+                bookings[i] = newBooking(ids[i], requests.get(i));
+                priced.add(requests.get(i));
+                pricedIndexes.add(i);
+            } catch (RemoteException e) {
+                bookings[i] = new IIRCTCService.BookingDetails(ids[i], requests.get(i), 0);
+                bookings[i].status = BookingStatus.FAILED;
+                results[i] = BookingResult.failure(bookings[i], e.getMessage());
+            }
+        }
+
+        // One pass over the reservation service for every hold in the batch
+        List<SeatHold> holds = new ArrayList<>(Collections.nCopies(results.length, null));
+        if (!priced.isEmpty()) {
+            List<SeatHold> pricedHolds = reservationService.holdSeats(priced);
+            for (int j = 0; j < pricedHolds.size(); j++) {
+                holds.set(pricedIndexes.get(j), pricedHolds.get(j));
+            }
+        }
+        List<Integer> held = new ArrayList<>();
+        List<IIRCTCService.BookingDetails> toPay = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            IIRCTCService.BookingDetails booking = bookings[i];
+            if (holds.get(i) == null && requests.get(i).waitlistIfFull) {
+                results[i] = waitlisted(booking);
+            } else if (holds.get(i) == null) {
+                booking.status = BookingStatus.FAILED;
+                results[i] = BookingResult.failure(booking, "Not enough seats available");
+            } else {
+                try {
+                    repository.create(booking);
+                } catch (IOException e) {
+                    List<SeatHold> taken = new ArrayList<>(holds);
+                    taken.removeIf(h -> h == null);
+                    reservationService.releaseHolds(taken);
+                    markFailed(toPay);
+                    throw new RemoteException("Bookings could not be recorded", e);
+                }
+                held.add(i);
+                toPay.add(booking);
+            }
+        }
+        if (toPay.isEmpty()) {
+            return List.of(results);
+        }
+
+        boolean[] paid;
+        try {
+            paid = paymentService.processPayments(toPay);
+        } catch (RemoteException e) {
+            reservationService.releaseHolds(heldSubset(holds, held));
+            markFailed(toPay);
+            throw e;
+        }
+
+        // Same PENDING -> PAID -> CONFIRMED steps as a single booking
+        List<IIRCTCService.BookingDetails> charged = new ArrayList<>();
+        List<SeatHold> toCommit = new ArrayList<>();
+        List<SeatHold> toRelease = new ArrayList<>();
+        for (int j = 0; j < held.size(); j++) {
+            if (paid[j]) {
+                charged.add(toPay.get(j));
+            }
+            (paid[j] ? toCommit : toRelease).add(holds.get(held.get(j)));
+        }
+        List<IIRCTCService.BookingDetails> unrefunded = new ArrayList<>(charged);
+        try {
+            for (IIRCTCService.BookingDetails booking : charged) {
+                repository.updateStatus(booking, BookingStatus.PAID);
+            }
+            reservationService.releaseHolds(toRelease);
+            List<SeatAllocation> allocations = reservationService.commitHolds(toCommit);
+
+            List<IIRCTCService.BookingDetails> confirmed = new ArrayList<>();
+            List<IIRCTCService.BookingDetails> toRefund = new ArrayList<>();
+            int committed = 0;
+            for (int j = 0; j < held.size(); j++) {
+                IIRCTCService.BookingDetails booking = toPay.get(j);
+                int i = held.get(j);
+                if (!paid[j]) {
+                    repository.updateStatus(booking, BookingStatus.FAILED);
+                    results[i] = BookingResult.failure(booking, "Payment failed");
+                    continue;
+                }
+                booking.seats = allocations.get(committed++);
+                if (booking.seats == null) {
+                    repository.updateStatus(booking, BookingStatus.FAILED);
+                    toRefund.add(booking);
+                    results[i] = BookingResult.failure(booking, "Seat hold expired before payment completed");
+                } else {
+                    confirmed.add(booking);
+                    results[i] = BookingResult.success(booking);
+                }
+            }
+            if (!toRefund.isEmpty()) {
+                paymentService.processRefunds(toRefund);
+                unrefunded.removeAll(toRefund);
+            }
+            record(confirmed);
+        } catch (RemoteException | RuntimeException e) {
+            abandonBatch(toRelease, toCommit, charged, unrefunded);
+            markFailed(toPay);
+            throw e;
+        }
+        return List.of(results);
+    }
+
+    // As finishBooking does for one booking: every seat taken for the batch goes back and every
+    // charged booking not yet refunded gets its money back. Another failure is already on its
+    // way out, so errors here only get logged.
+    private void abandonBatch(List<SeatHold> unpaidHolds, List<SeatHold> paidHolds,
+                              List<IIRCTCService.BookingDetails> charged,
+                              List<IIRCTCService.BookingDetails> unrefunded) {
+        try {
+            // A hold that was already committed or released is skipped by the reservation service
+            reservationService.releaseHolds(unpaidHolds);
+            reservationService.releaseHolds(paidHolds);
+            for (IIRCTCService.BookingDetails booking : charged) {
+                if (booking.seats != null) {
+                    reservationService.releaseSeats(booking.seats);
+                }
+            }
+        } catch (RemoteException | RuntimeException e) {
+            Log.warn("BookingService: Seats of a failed batch could not all be released: " + e.getMessage());
+        }
+        try {
+            if (!unrefunded.isEmpty()) {
+                paymentService.processRefunds(unrefunded);
+            }
+        } catch (RemoteException | RuntimeException e) {
+            Log.warn("BookingService: Refunds for a failed batch could not be made: " + e.getMessage());
+        }
+    }
+
+    // Puts one sold-out item of a batch on the waitlist. A remote or ledger failure only fails
+    // that item, the rest of the batch still holds seats and goes on to payment.
+    private BookingResult waitlisted(IIRCTCService.BookingDetails booking) {
+        try {
+            String refusal = waitlistRefusal(booking);
+            if (refusal != null) {
+                booking.status = BookingStatus.FAILED;
+                return BookingResult.failure(booking, refusal);
+            }
+            if (joinWaitlist(booking)) {
+                return BookingResult.success(booking);
+            }
+            return BookingResult.failure(booking, "Not enough seats available and the waitlist is full");
+        } catch (RemoteException e) {
+            booking.status = BookingStatus.FAILED;
+            return BookingResult.failure(booking, e.getMessage());
+        }
+    }
+
+    // Called while another failure is on its way out, so a ledger error here only gets logged
+    private void markFailed(List<IIRCTCService.BookingDetails> bookings) {
+        for (IIRCTCService.BookingDetails booking : bookings) {
+            if (booking.status == BookingStatus.FAILED) {
+                continue;
+            }
+            try {
+                repository.updateStatus(booking, BookingStatus.FAILED);
+            } catch (UncheckedIOException e) {
+                booking.status = BookingStatus.FAILED;
+                Log.warn("BookingService: Booking " + booking.bookingId + " failed but could not be recorded: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkInitialized() throws RemoteException {
         if (reservationService == null || paymentService == null) {
             throw new RemoteException("Services not properly initialized");
         }
+    }
 
-        if (!reservationService.checkAvailability(numSeats)) {
-            throw new RemoteException("Not enough seats available");
+    // Bookings carry no quota yet, so they are priced at the first one in the fare rules, GENERAL.
+    // A class the fare rules have no rates for cannot be booked.
+    private IIRCTCService.BookingDetails newBooking(long bookingId, BookingRequest request) throws RemoteException {
+        try {
+            return new IIRCTCService.BookingDetails(bookingId, request, request.numSeats
+                * fares.farePerSeatPaise(request.trainNumber, request.journeyDate, request.travelClass, 0));
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
         }
+    }
 
-        IIRCTCService.BookingDetails booking = new IIRCTCService.BookingDetails(
-            bookingCounter++, numSeats, numSeats * 100.0 // Assuming ₹100 per seat
-        );
+    private static List<SeatHold> heldSubset(List<SeatHold> holds, List<Integer> held) {
+        List<SeatHold> subset = new ArrayList<>(held.size());
+        for (int i : held) {
+            subset.add(holds.get(i));
+        }
+        return subset;
+    }
 
-        if (paymentService.processPayment(booking)) {
-            reservationService.updateSeats(numSeats, true);
-            booking.status = "CONFIRMED";
-            return booking;
-        } else {
-            booking.status = "FAILED";
-            throw new RemoteException("Payment failed");
+    // Confirms the bookings and waits for one flush that covers all of them
+    private void record(List<IIRCTCService.BookingDetails> bookings) throws RemoteException {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        try {
+            long sequence = 0;
+            for (IIRCTCService.BookingDetails booking : bookings) {
+                sequence = repository.confirm(booking);
+            }
+            ledger.awaitDurable(sequence);
+        } catch (IOException e) {
+            throw new RemoteException("Bookings could not be recorded", e);
         }
     }
-} 
\ No newline at end of file
+}
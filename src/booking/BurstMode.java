@@ -0,0 +1,230 @@
+package booking;
+
+import common.BookingRequest;
+import common.IIRCTCService;
+import common.Log;
+import common.SeatHold;
+import reservation.IReservationService;
+import java.rmi.RemoteException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Quota openings (Tatkal at 10:00 and 11:00) bring thousands of bookings for the same trains
+// within a second. For windowSeconds after each opening, seat holds are taken in micro-batches:
+// bookings for a train are collected for batchMillis, or until maxBatch have arrived, and the
+// batch goes to the reservation service as one call that grants it in arrival order. Each
+// booking then carries on alone through payment.
+//
+// warmupSeconds before an opening the inventories for the journey date daysAhead are built,
+// the seat paths are compiled and the payment workers are started, so the first bookings of
+// the window do not pay for any of that.
+public class BurstMode {
+    private static final int SECONDS_PER_DAY = 86400;
+
+    private final IReservationService reservationService;
+    private final Runnable warmUpPayments;
+    private final int[] openings;
+    private final boolean always;
+    private final int windowSeconds;
+    private final int warmupSeconds;
+    private final int daysAhead;
+    private final long batchNanos;
+    private final int maxBatch;
+    private final boolean[] warmed;
+    private final Map<Integer, Lane> lanes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "burst-mode");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean active;
+
+    public BurstMode(IReservationService reservationService, Runnable warmUpPayments, List<LocalTime> openings,
+                     boolean always, int windowSeconds, int warmupSeconds, int daysAhead, long batchMillis, int maxBatch) {
+        this.reservationService = reservationService;
+        this.warmUpPayments = warmUpPayments;
+        this.openings = new int[openings.size()];
+        for (int i = 0; i < this.openings.length; i++) {
+            this.openings[i] = openings.get(i).toSecondOfDay();
+        }
+        this.always = always;
+        this.windowSeconds = windowSeconds;
+        this.warmupSeconds = warmupSeconds;
+        this.daysAhead = daysAhead;
+        this.batchNanos = TimeUnit.MILLISECONDS.toNanos(batchMillis);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.warmed = new boolean[this.openings.length + 1];
+        clock.scheduleWithFixedDelay(this::tick, 0, 1, TimeUnit.SECONDS);
+    }
+
+    // Configured from irctc.burst.windows (HH:mm,HH:mm), windowSeconds (300), warmupSeconds (60),
+    // daysAhead (1), batchMillis (2) and maxBatch (256). irctc.burst.always=true keeps it on all
+    // the time. Null when neither is set.
+    public static BurstMode fromSystemProperties(IReservationService reservationService, Runnable warmUpPayments) {
+        List<LocalTime> openings = new ArrayList<>();
+        for (String time : System.getProperty("irctc.burst.windows", "").split(",")) {
+            if (!time.isBlank()) {
+                openings.add(LocalTime.parse(time.trim()));
+            }
+        }
+        boolean always = Boolean.getBoolean("irctc.burst.always");
+        if (openings.isEmpty() && !always) {
+            return null;
+        }
+        return new BurstMode(reservationService, warmUpPayments, openings, always,
+            Integer.getInteger("irctc.burst.windowSeconds", 300),
+            Integer.getInteger("irctc.burst.warmupSeconds", 60),
+            Integer.getInteger("irctc.burst.daysAhead", 1),
+            Long.getLong("irctc.burst.batchMillis", 2),
+            Integer.getInteger("irctc.burst.maxBatch", 256));
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    // Waits for the batch this booking joins to be held and returns its hold, null when there
+    // were not enough seats. The first booking into an empty lane collects the batch and makes
+    // the call for everyone in it.
+    public SeatHold hold(IIRCTCService.BookingDetails booking) throws RemoteException {
+        Lane lane = lanes.computeIfAbsent(booking.trainNumber, train -> new Lane());
+        CompletableFuture<SeatHold> hold = new CompletableFuture<>();
+        Batch batch;
+        boolean leader;
+        lane.lock.lock();
+        try {
+            leader = lane.open == null;
+            if (leader) {
+                lane.open = new Batch();
+            }
+            batch = lane.open;
+            batch.requests.add(new BookingRequest(booking.trainNumber, booking.journeyDate, booking.travelClass,
+                booking.numSeats, booking.userId, false, booking.legs));
+            batch.holds.add(hold);
+            if (batch.requests.size() >= maxBatch) {
+                lane.open = null;
+                lane.batchFull.signalAll();
+            }
+        } finally {
+            lane.lock.unlock();
+        }
+        if (leader) {
+            collect(lane, batch);
+            flush(batch);
+        }
+        try {
+            // Not interruptible: once the batch is sent the hold exists and has to be returned
+            return hold.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            throw new RemoteException("Seat hold failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        clock.shutdownNow();
+    }
+
+    // Keeps the lane open for batchMillis unless the batch fills up first
+    private void collect(Lane lane, Batch batch) {
+        long deadline = System.nanoTime() + batchNanos;
+        boolean interrupted = false;
+        lane.lock.lock();
+        try {
+            long left;
+            while (lane.open == batch && (left = deadline - System.nanoTime()) > 0) {
+                try {
+                    lane.batchFull.awaitNanos(left);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (lane.open == batch) {
+                lane.open = null;
+            }
+        } finally {
+            lane.lock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(Batch batch) {
+        try {
+            List<SeatHold> holds = reservationService.holdSeats(batch.requests);
+            for (int i = 0; i < holds.size(); i++) {
+                batch.holds.get(i).complete(holds.get(i));
+            }
+        } catch (RemoteException | RuntimeException e) {
+            for (CompletableFuture<SeatHold> hold : batch.holds) {
+                hold.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Once a second: switches batching on inside a window and warms up ahead of one. An
+    // opening's warm-up runs once, and again for the next day after its window has closed.
+    private void tick() {
+        int now = LocalTime.now().toSecondOfDay();
+        boolean inWindow = always;
+        boolean warmUpDue = always && !warmed[openings.length];
+        warmed[openings.length] = always;
+        for (int i = 0; i < openings.length; i++) {
+            int ahead = Math.floorMod(openings[i] - now, SECONDS_PER_DAY);
+            boolean open = Math.floorMod(now - openings[i], SECONDS_PER_DAY) < windowSeconds;
+            inWindow |= open;
+            if ((open || ahead <= warmupSeconds) && !warmed[i]) {
+                warmed[i] = true;
+                warmUpDue = true;
+            } else if (!open && ahead > warmupSeconds) {
+                warmed[i] = false;
+            }
+        }
+        if (inWindow != active) {
+            active = inWindow;
+            Log.info("BurstMode: Seat holds " + (inWindow ? "batched every " + TimeUnit.NANOSECONDS.toMillis(batchNanos)
+                + " ms per train" : "taken one at a time again"));
+        }
+        if (warmUpDue) {
+            warmUp();
+        }
+    }
+
+    private void warmUp() {
+        LocalDate journeyDate = LocalDate.now().plusDays(daysAhead);
+        // A failure here must not stop the clock
+        try {
+            reservationService.prepare(journeyDate);
+            warmUpPayments.run();
+        } catch (RemoteException | RuntimeException e) {
+            Log.warn("BurstMode: Warm-up for " + journeyDate + " failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Lane {
+        // A j.u.c lock so the leader parks cleanly on virtual threads while it collects
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition batchFull = lock.newCondition();
+        // The batch still taking bookings, null when none is
+        Batch open;
+    }
+
+    private static final class Batch {
+        final List<BookingRequest> requests = new ArrayList<>();
+        final List<CompletableFuture<SeatHold>> holds = new ArrayList<>();
+    }
+}
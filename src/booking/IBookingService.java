@@ -1,9 +1,37 @@
 package booking;
 
+import common.BookingPage;
+import common.BookingRequest;
+import common.BookingResult;
+import common.BookingStatus;
+import common.FareQuote;
+import common.IBookingListener;
 import common.IIRCTCService;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.LocalDate;
+import java.util.List;
 
 public interface IBookingService extends Remote {
     IIRCTCService.BookingDetails bookTicket(int numSeats) throws RemoteException;
+    IIRCTCService.BookingDetails bookTicket(BookingRequest request) throws RemoteException;
+    List<BookingResult> bookTickets(List<BookingRequest> requests) throws RemoteException;
+
+    // Returns straight away with a PENDING booking, poll getBooking for the outcome
+    IIRCTCService.BookingDetails submitBooking(BookingRequest request) throws RemoteException;
+    IIRCTCService.BookingDetails getBooking(long bookingId) throws RemoteException;
+
+    // Booking history, newest first. userId and status are optional, cursor 0 starts at the top.
+    BookingPage getBookings(String userId, BookingStatus status, long cursor, int pageSize) throws RemoteException;
+
+    // Price of the seats under the current fare rules; does not look at or hold seats. quota is
+    // one the fare rules define, e.g. GENERAL or TATKAL.
+    FareQuote quote(int trainNumber, LocalDate journeyDate, String travelClass, String quota, int numSeats) throws RemoteException;
+
+    // Place in line of a WAITLISTED booking, 1 being next; 0 once it has left the waitlist
+    int getWaitlistPosition(long bookingId) throws RemoteException;
+
+    // Bookings of the user that change on the server, e.g. confirmed off the waitlist, are pushed to the listener
+    void subscribe(String userId, IBookingListener listener) throws RemoteException;
+    void unsubscribe(String userId, IBookingListener listener) throws RemoteException;
 } 
\ No newline at end of file
@@ -0,0 +1,179 @@
+package booking;
+
+import common.AvailabilitySnapshot;
+import common.IIRCTCService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// First come, first served queues of bookings waiting for seats, one per (train, date, class)
+// pool. Every booking joining a pool takes the next slot number, and a Fenwick tree over the
+// slots counts the bookings still waiting, so a booking's place in line, the head of the queue
+// and leaving from the middle are all O(log n). Slots are renumbered when the queue outgrows
+// its arrays, which keeps memory proportional to the bookings actually waiting.
+public class Waitlist {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxPerPool;
+    private final Map<String, PoolQueue> queues = new ConcurrentHashMap<>();
+    private final Map<Long, PoolQueue> queueOf = new ConcurrentHashMap<>();
+
+    public Waitlist(int maxPerPool) {
+        this.maxPerPool = maxPerPool;
+    }
+
+    // Configured from irctc.waitlist.maxPerPool
+    public static Waitlist fromSystemProperties() {
+        return new Waitlist(Integer.getInteger("irctc.waitlist.maxPerPool", 1000));
+    }
+
+    public static String poolOf(IIRCTCService.BookingDetails booking) {
+        return AvailabilitySnapshot.poolKey(booking.trainNumber, booking.journeyDate, booking.travelClass);
+    }
+
+    // Puts the booking at the back of its pool's queue and returns its position, starting at
+    // 1, or 0 if the queue is already full
+    public int add(IIRCTCService.BookingDetails booking) {
+        PoolQueue queue = queues.computeIfAbsent(poolOf(booking), pool -> new PoolQueue());
+        // Findable before it can reach the head, so a promotion can always take it off again
+        queueOf.put(booking.bookingId, queue);
+        int position = queue.add(booking);
+        if (position == 0) {
+            queueOf.remove(booking.bookingId);
+        }
+        return position;
+    }
+
+    // False if the booking was not waiting, e.g. because it has just been promoted
+    public boolean remove(IIRCTCService.BookingDetails booking) {
+        PoolQueue queue = queueOf.remove(booking.bookingId);
+        return queue != null && queue.remove(booking.bookingId);
+    }
+
+    // 1 for the head of the queue, 0 if the booking is not waiting
+    public int position(long bookingId) {
+        PoolQueue queue = queueOf.get(bookingId);
+        return queue == null ? 0 : queue.position(bookingId);
+    }
+
+    public IIRCTCService.BookingDetails head(String pool) {
+        PoolQueue queue = queues.get(pool);
+        return queue == null ? null : queue.head();
+    }
+
+    public int size(String pool) {
+        PoolQueue queue = queues.get(pool);
+        return queue == null ? 0 : queue.size();
+    }
+
+    // Pools with at least one booking waiting
+    public List<String> waitingPools() {
+        List<String> pools = new ArrayList<>();
+        for (Map.Entry<String, PoolQueue> entry : queues.entrySet()) {
+            if (entry.getValue().size() > 0) {
+                pools.add(entry.getKey());
+            }
+        }
+        return pools;
+    }
+
+    private class PoolQueue {
+        // 1-based: slots[i] is the booking in slot i, or null once it has left
+        private IIRCTCService.BookingDetails[] slots = new IIRCTCService.BookingDetails[INITIAL_CAPACITY + 1];
+        private int[] tree = new int[INITIAL_CAPACITY + 1];
+        private final Map<Long, Integer> slotOf = new HashMap<>();
+        private int nextSlot = 1;
+
+        synchronized int add(IIRCTCService.BookingDetails booking) {
+            if (slotOf.size() >= maxPerPool) {
+                return 0;
+            }
+            if (nextSlot == slots.length) {
+                renumber();
+            }
+            int slot = nextSlot++;
+            slots[slot] = booking;
+            slotOf.put(booking.bookingId, slot);
+            update(slot, 1);
+            return prefix(slot);
+        }
+
+        synchronized boolean remove(long bookingId) {
+            Integer slot = slotOf.remove(bookingId);
+            if (slot == null) {
+                return false;
+            }
+            slots[slot] = null;
+            update(slot, -1);
+            return true;
+        }
+
+        synchronized int position(long bookingId) {
+            Integer slot = slotOf.get(bookingId);
+            return slot == null ? 0 : prefix(slot);
+        }
+
+        synchronized IIRCTCService.BookingDetails head() {
+            return slotOf.isEmpty() ? null : slots[lowestSlotWithCount(1)];
+        }
+
+        synchronized int size() {
+            return slotOf.size();
+        }
+
+        private void update(int slot, int delta) {
+            for (int i = slot; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Bookings waiting in slots 1..slot
+        private int prefix(int slot) {
+            int sum = 0;
+            for (int i = slot; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+
+        // Smallest slot whose prefix count reaches k, by descending the tree
+        private int lowestSlotWithCount(int k) {
+            int slot = 0;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                int next = slot + step;
+                if (next < tree.length && tree[next] < k) {
+                    slot = next;
+                    k -= tree[next];
+                }
+            }
+            return slot + 1;
+        }
+
+        // Packs the waiting bookings into slots 1..n, in order, with room for as many again,
+        // and rebuilds the tree in linear time
+        private void renumber() {
+            int capacity = Math.max(INITIAL_CAPACITY, slotOf.size() * 2);
+            IIRCTCService.BookingDetails[] packed = new IIRCTCService.BookingDetails[capacity + 1];
+            int count = 0;
+            for (int i = 1; i < nextSlot; i++) {
+                if (slots[i] != null) {
+                    packed[++count] = slots[i];
+                    slotOf.put(slots[i].bookingId, count);
+                }
+            }
+            int[] rebuilt = new int[capacity + 1];
+            for (int i = 1; i <= capacity; i++) {
+                rebuilt[i] += packed[i] != null ? 1 : 0;
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    rebuilt[parent] += rebuilt[i];
+                }
+            }
+            slots = packed;
+            tree = rebuilt;
+            nextSlot = count + 1;
+        }
+    }
+}
@@ -1,88 +1,219 @@
 package cancellation;
 
+import booking.BookingRepository;
+import common.BookingResult;
+import common.BookingStatus;
 import common.IIRCTCService;
+import common.Log;
+import common.ServiceLocator;
+import fare.FareEngine;
+import ledger.BookingLedger;
 import reservation.IReservationService;
 import payment.IPaymentService;
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 public class CancellationServiceImpl extends UnicastRemoteObject implements ICancellationService {
     private IReservationService reservationService;
     private IPaymentService paymentService;
-    private static final int MAX_RETRIES = 5;
-    private static final long RETRY_DELAY = 1000; // 1 second
+    private final BookingLedger ledger;
+    private final BookingRepository repository;
+    private final FareEngine fares;
+    private final IdempotencyCache dedup = new IdempotencyCache(Integer.getInteger("irctc.cancel.dedupCapacity", 100_000));
+    // Bookings with a cancellation between validation and journaling
+    private final Set<Long> cancelling = ConcurrentHashMap.newKeySet();
 
-    public CancellationServiceImpl() throws RemoteException {
+    public CancellationServiceImpl(BookingLedger ledger, BookingRepository repository, FareEngine fares)
+            throws RemoteException {
         super();
+        this.ledger = ledger;
+        this.repository = repository;
+        this.fares = fares;
         initializeServices();
     }
 
     private void initializeServices() {
-        for (int i = 0; i < MAX_RETRIES; i++) {
-            try {
-                Registry registry = LocateRegistry.getRegistry("localhost", 1099);
-                reservationService = (IReservationService) registry.lookup("ReservationService");
-                paymentService = (IPaymentService) registry.lookup("PaymentService");
-                
-                if (reservationService != null && paymentService != null) {
-                    System.out.println("CancellationService successfully connected to dependencies");
-                    return;
-                }
-            } catch (Exception e) {
-                System.err.println("Attempt " + (i + 1) + " to connect to services failed");
-                try {
-                    Thread.sleep(RETRY_DELAY);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
-            }
+        // Co-located dependencies are called directly, the rest through stubs that reconnect by themselves
+        ServiceLocator locator = ServiceLocator.shared();
+        try {
+            reservationService = locator.lookup("ReservationService", IReservationService.class);
+            paymentService = locator.lookup("PaymentService", IPaymentService.class);
+        } catch (RemoteException e) {
+            Log.warn("CancellationService: Failed to initialize services: " + e.getMessage());
         }
-        System.err.println("Failed to initialize services after " + MAX_RETRIES + " attempts");
     }
 
     @Override
-    public boolean cancelBooking(IIRCTCService.BookingDetails booking, int numTicketsToCancel) throws RemoteException {
-        System.out.println("CancellationService: Attempting to cancel " + numTicketsToCancel + " tickets from booking " + booking.bookingId);
-        
+    public BookingResult cancelBooking(long bookingId, int numTicketsToCancel, String idempotencyKey) throws RemoteException {
+        return cancelBookings(new long[]{bookingId}, new int[]{numTicketsToCancel},
+            new String[]{idempotencyKey}).get(0);
+    }
+
+    @Override
+    public List<BookingResult> cancelBookings(long[] bookingIds, int[] numTicketsToCancel, String[] idempotencyKeys) throws RemoteException {
         if (reservationService == null || paymentService == null) {
-            System.out.println("CancellationService: Services not initialized");
             throw new RemoteException("Services not properly initialized");
         }
+        if (bookingIds.length != numTicketsToCancel.length
+                || (idempotencyKeys != null && idempotencyKeys.length != bookingIds.length)) {
+            throw new RemoteException("Expected one ticket count and key per booking");
+        }
+
+        int count = bookingIds.length;
+        BookingResult[] results = new BookingResult[count];
+        String[] keys = new String[count];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<BookingResult>[] attempts = new CompletableFuture[count];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<BookingResult>[] earlier = new CompletableFuture[count];
+        List<Integer> valid = new ArrayList<>();
+        List<IIRCTCService.BookingDetails> refunds = new ArrayList<>();
+        // Cancellations already refunded and applied, which a retry must not repeat
+        boolean[] applied = new boolean[count];
 
         try {
-            // Allow cancellation for both CONFIRMED and PARTIALLY CANCELLED tickets
-            if (booking.status.equals("CONFIRMED") || booking.status.equals("PARTIALLY CANCELLED")) {
-                if (numTicketsToCancel <= 0 || numTicketsToCancel > booking.numSeats) {
-                    System.out.println("CancellationService: Invalid number of tickets to cancel");
-                    return false;
+            for (int i = 0; i < count; i++) {
+                String key = idempotencyKeys == null ? null : idempotencyKeys[i];
+                if (key != null) {
+                    keys[i] = bookingIds[i] + ":" + key;
+                    attempts[i] = new CompletableFuture<>();
+                    earlier[i] = dedup.claim(keys[i], attempts[i]);
+                    if (earlier[i] != null) {
+                        continue; // A retry, answered from the first attempt below
+                    }
                 }
 
-                System.out.println("CancellationService: Processing refund");
-                double refundAmount = (booking.amount / booking.numSeats) * numTicketsToCancel;
-                booking.amount = booking.amount - refundAmount;
-                
-                if (paymentService.processRefund(new IIRCTCService.BookingDetails(booking.bookingId, numTicketsToCancel, refundAmount))) {
-                    System.out.println("CancellationService: Refund processed, updating seats");
-                    reservationService.updateSeats(numTicketsToCancel, false);
-                    booking.numSeats -= numTicketsToCancel;
-                    
-                    if (booking.numSeats == 0) {
-                        booking.status = "CANCELLED";
+                IIRCTCService.BookingDetails booking = repository.get(bookingIds[i]);
+                if (booking == null) {
+                    results[i] = BookingResult.failure(null, "Unknown booking " + bookingIds[i]);
+                } else if (booking.status == BookingStatus.WAITLISTED) {
+                    results[i] = leaveWaitlist(booking, numTicketsToCancel[i]);
+                } else if (!cancelling.add(booking.bookingId)) {
+                    results[i] = BookingResult.failure(booking, "Another cancellation of this booking is in progress");
+                } else {
+                    // Checked under the guard, so a cancellation that finished a moment ago is seen
+                    booking = repository.get(bookingIds[i]);
+                    if (!booking.status.isCancellable()) {
+                        cancelling.remove(booking.bookingId);
+                        results[i] = BookingResult.failure(booking, "Only CONFIRMED or PARTIALLY CANCELLED bookings can be cancelled");
+                    } else if (numTicketsToCancel[i] <= 0 || numTicketsToCancel[i] > booking.numSeats) {
+                        cancelling.remove(booking.bookingId);
+                        results[i] = BookingResult.failure(booking, "Invalid number of tickets to cancel");
                     } else {
-                        booking.status = "PARTIALLY CANCELLED";
+                        valid.add(i);
+                        refunds.add(refundFor(booking, numTicketsToCancel[i]));
                     }
-                    System.out.println("CancellationService: Cancellation successful");
-                    return true;
                 }
             }
-            System.out.println("CancellationService: Cancellation failed - booking not confirmed/partially cancelled or refund failed");
-            return false;
-        } catch (Exception e) {
-            System.out.println("CancellationService: Error during cancellation - " + e.getMessage());
-            e.printStackTrace();
-            throw new RemoteException("Cancellation failed: " + e.getMessage());
+
+            if (!refunds.isEmpty()) {
+                if (Log.isEnabled(Log.Level.DEBUG)) {
+                    Log.debug("CancellationService: Processing " + refunds.size() + " refunds");
+                }
+                boolean[] refunded = paymentService.processRefunds(refunds);
+                long sequence = -1;
+                for (int j = 0; j < valid.size(); j++) {
+                    int i = valid.get(j);
+                    IIRCTCService.BookingDetails booking = repository.get(bookingIds[i]);
+                    if (refunded[j]) {
+                        sequence = applyCancellation(booking, refunds.get(j));
+                        applied[i] = true;
+                        results[i] = BookingResult.refunded(booking, refunds.get(j).amountPaise);
+                    } else {
+                        results[i] = BookingResult.failure(booking, "Refund failed");
+                    }
+                }
+                if (sequence >= 0) {
+                    ledger.awaitDurable(sequence);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < count; i++) {
+                if (attempts[i] == null || earlier[i] != null) {
+                    continue;
+                }
+                if (applied[i]) {
+                    // The money went back, so a retry with this key gets this answer
+                    attempts[i].complete(results[i]);
+                } else {
+                    dedup.forget(keys[i], attempts[i]);
+                    attempts[i].completeExceptionally(e);
+                }
+            }
+            Log.warn("CancellationService: Error during cancellation - " + e.getMessage());
+            throw new RemoteException("Cancellation failed: " + e.getMessage(), e);
+        } finally {
+            for (int i : valid) {
+                cancelling.remove(bookingIds[i]);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (earlier[i] != null) {
+                results[i] = awaitEarlier(earlier[i]);
+            } else if (attempts[i] != null) {
+                if (!results[i].isSuccess()) {
+                    // Only successes are remembered, a failed attempt may be retried with the same key
+                    dedup.forget(keys[i], attempts[i]);
+                }
+                attempts[i].complete(results[i]);
+            }
+        }
+        return List.of(results);
+    }
+
+    private BookingResult awaitEarlier(CompletableFuture<BookingResult> earlier) throws RemoteException {
+        try {
+            return earlier.get();
+        } catch (ExecutionException e) {
+            throw new RemoteException("Cancellation failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for an earlier cancellation");
+        }
+    }
+
+    // Nothing was charged for a waitlisted booking, so it just leaves the queue.
+    // If it is no longer there it was promoted a moment ago and is now going through payment.
+    private BookingResult leaveWaitlist(IIRCTCService.BookingDetails booking, int numTicketsToCancel) {
+        if (numTicketsToCancel != booking.numSeats) {
+            return BookingResult.failure(booking, "A waitlisted booking can only be cancelled in full");
+        }
+        if (!repository.withdraw(booking)) {
+            return BookingResult.failure(booking, "The booking is being confirmed from the waitlist, try again shortly");
+        }
+        return BookingResult.success(booking);
+    }
+
+    // The cancelled seats' share of what was paid, in whole paise; the last seats out of a
+    // booking pick up any remainder
+    private static long shareOf(IIRCTCService.BookingDetails booking, int numTicketsToCancel) {
+        return numTicketsToCancel == booking.numSeats
+            ? booking.amountPaise : booking.amountPaise / booking.numSeats * numTicketsToCancel;
+    }
+
+    // The share less the cancellation charge for the time left before the journey
+    private IIRCTCService.BookingDetails refundFor(IIRCTCService.BookingDetails booking, int numTicketsToCancel) {
+        long refundPaise = fares.refundPaise(shareOf(booking, numTicketsToCancel), booking.journeyDate);
+        return new IIRCTCService.BookingDetails(booking.bookingId, numTicketsToCancel, refundPaise);
+    }
+
+    // Returns the seats to inventory and records the cancellation against the booking. The
+    // caller waits on the returned ledger sequence.
+    private long applyCancellation(IIRCTCService.BookingDetails booking, IIRCTCService.BookingDetails refund) throws IOException {
+        int numTicketsToCancel = refund.numSeats;
+        if (booking.seats != null) {
+            reservationService.releaseSeats(booking.seats.last(numTicketsToCancel));
+        } else {
+            reservationService.updateSeats(numTicketsToCancel, false);
         }
+        return repository.cancelSeats(booking, numTicketsToCancel, shareOf(booking, numTicketsToCancel));
     }
-} 
\ No newline at end of file
+}
@@ -1,9 +1,13 @@
 package cancellation;
 
-import common.IIRCTCService;
+import common.BookingResult;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface ICancellationService extends Remote {
-    boolean cancelBooking(IIRCTCService.BookingDetails booking, int numTicketsToCancel) throws RemoteException;
-} 
\ No newline at end of file
+    // Cancels against the server's copy of the booking. Repeating a call with the same
+    // idempotency key returns the first outcome instead of refunding twice; the key may be null.
+    BookingResult cancelBooking(long bookingId, int numTicketsToCancel, String idempotencyKey) throws RemoteException;
+    List<BookingResult> cancelBookings(long[] bookingIds, int[] numTicketsToCancel, String[] idempotencyKeys) throws RemoteException;
+}
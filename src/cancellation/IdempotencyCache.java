@@ -0,0 +1,37 @@
+package cancellation;
+
+import common.BookingResult;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Outcomes of recent cancellations by idempotency key, so a client retrying after a timeout
+// gets the original answer instead of a second refund. A retry that arrives while the first
+// attempt is still running waits for it. Keys that ended in an error are forgotten so the
+// client can try again, and the oldest keys are evicted once the cache is full.
+class IdempotencyCache {
+    private final Map<String, CompletableFuture<BookingResult>> entries;
+
+    IdempotencyCache(int capacity) {
+        this.entries = new LinkedHashMap<String, CompletableFuture<BookingResult>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<BookingResult>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Returns the earlier attempt for this key, or null if the caller now owns it
+    synchronized CompletableFuture<BookingResult> claim(String key, CompletableFuture<BookingResult> attempt) {
+        CompletableFuture<BookingResult> existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        entries.put(key, attempt);
+        return null;
+    }
+
+    synchronized void forget(String key, CompletableFuture<BookingResult> attempt) {
+        entries.remove(key, attempt);
+    }
+}
@@ -0,0 +1,110 @@
+package client;
+
+import common.AvailabilitySnapshot;
+import common.IAvailabilityListener;
+import common.Log;
+import reservation.IReservationService;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Client-side copy of seat availability, kept current by deltas pushed from the reservation
+// service. Reads never leave the process; the server is only asked for a full snapshot at
+// start-up and when a gap in the delta sequence shows that an update was missed.
+public class AvailabilityCache implements IAvailabilityListener {
+    private final IReservationService reservationService;
+    private final Map<String, Integer> available = new ConcurrentHashMap<>();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private long sequence = -1;
+
+    public AvailabilityCache(IReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    public void start() throws RemoteException {
+        UnicastRemoteObject.exportObject(this, 0);
+        reservationService.subscribe(this);
+        resync();
+    }
+
+    public void stop() {
+        try {
+            reservationService.unsubscribe(this);
+        } catch (RemoteException e) {
+            // The server will drop us on the next failed push anyway
+        }
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Never exported
+        }
+    }
+
+    // Returns -1 for a pool the cache has not seen yet
+    public int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass) {
+        return available.getOrDefault(AvailabilitySnapshot.poolKey(trainNumber, journeyDate, travelClass), -1);
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    // For a reservation service that restarted: it numbers its deltas from the start again and
+    // no longer knows about this cache
+    public void reconnected() throws RemoteException {
+        synchronized (this) {
+            sequence = -1;
+        }
+        reservationService.subscribe(this);
+        resync();
+    }
+
+    public void resync() throws RemoteException {
+        AvailabilitySnapshot full = reservationService.getAvailabilitySnapshot();
+        synchronized (this) {
+            if (full.sequence >= sequence) {
+                apply(full);
+                sequence = full.sequence;
+            }
+        }
+        fireChanged();
+    }
+
+    @Override
+    public void availabilityChanged(AvailabilitySnapshot delta) throws RemoteException {
+        boolean gap;
+        synchronized (this) {
+            if (delta.sequence <= sequence) {
+                return; // Already covered by a newer full snapshot
+            }
+            gap = delta.sequence != sequence + 1;
+            if (!gap) {
+                apply(delta);
+                sequence = delta.sequence;
+            }
+        }
+        if (gap) {
+            Log.warn("AvailabilityCache: Updates missed before " + delta.sequence + ", resyncing");
+            resync();
+        } else {
+            fireChanged();
+        }
+    }
+
+    private void apply(AvailabilitySnapshot snapshot) {
+        for (int i = 0; i < snapshot.pools.length; i++) {
+            available.put(snapshot.pools[i], snapshot.available[i]);
+        }
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
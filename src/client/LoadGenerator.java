@@ -0,0 +1,244 @@
+package client;
+
+import booking.IBookingService;
+import cancellation.ICancellationService;
+import common.BookingRequest;
+import common.BookingResult;
+import common.IIRCTCService;
+import common.LatencyHistogram;
+import common.OverloadException;
+import reservation.IReservationService;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Headless load driver for a running IRCTCServer. Requests arrive on a fixed schedule (open
+// loop) whatever the server's response time, and are served by a pool of simulated users.
+// Latency is measured from when a request was due to start, so time spent queued behind a slow
+// server counts against it instead of silently lowering the offered load.
+//
+//   java client.LoadGenerator
+//
+//   -Dload.users=32                          concurrent users (worker threads)
+//   -Dload.rate=200                          requests per second
+//   -Dload.durationSeconds=30
+//   -Dload.mix=book=60,cancel=20,availability=20
+//   -Dload.train=12627 -Dload.class=SL -Dload.date=2026-12-01 -Dload.maxSeats=4
+//   -Dirctc.registry.host=localhost -Dirctc.registry.port=1099
+//
+// At the end every booking made during the run is read back from the server to check that no
+// seat was sold twice and that the pool's availability matches what is still booked. The check
+// assumes nothing else books on the same pool while the run is in progress.
+public class LoadGenerator {
+    enum Operation { BOOK, CANCEL, AVAILABILITY }
+
+    private final IBookingService bookingService;
+    private final ICancellationService cancellationService;
+    private final IReservationService reservationService;
+    private final int users;
+    private final double rate;
+    private final long durationNanos;
+    private final int[] cumulativeWeights = new int[Operation.values().length];
+    private final int trainNumber;
+    private final String travelClass;
+    private final LocalDate journeyDate;
+    private final int maxSeats;
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[Operation.values().length];
+    private final AtomicLong[] errors = new AtomicLong[Operation.values().length];
+    // Turned away by the server's admission control; expected under overload, so not errors
+    private final AtomicLong[] rejected = new AtomicLong[Operation.values().length];
+    private final AtomicLong cancelsWithoutBooking = new AtomicLong();
+    // Bookings with seats left to cancel, and every booking id confirmed during the run
+    private final ConcurrentLinkedDeque<IIRCTCService.BookingDetails> cancellable = new ConcurrentLinkedDeque<>();
+    private final Set<Long> confirmed = ConcurrentHashMap.newKeySet();
+    private long elapsedNanos;
+
+    public LoadGenerator(Registry registry) throws Exception {
+        bookingService = (IBookingService) registry.lookup("BookingService");
+        cancellationService = (ICancellationService) registry.lookup("CancellationService");
+        reservationService = (IReservationService) registry.lookup("ReservationService");
+        users = Integer.getInteger("load.users", 32);
+        rate = Double.parseDouble(System.getProperty("load.rate", "200"));
+        durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("load.durationSeconds", 30));
+        trainNumber = Integer.getInteger("load.train", 12627);
+        travelClass = System.getProperty("load.class", "SL");
+        String date = System.getProperty("load.date");
+        journeyDate = date != null ? LocalDate.parse(date) : LocalDate.now().plusDays(30);
+        maxSeats = Integer.getInteger("load.maxSeats", 4);
+        parseMix(System.getProperty("load.mix", "book=60,cancel=20,availability=20"));
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = new LatencyHistogram();
+            errors[i] = new AtomicLong();
+            rejected[i] = new AtomicLong();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Registry registry = LocateRegistry.getRegistry(System.getProperty("irctc.registry.host", "localhost"),
+            Integer.getInteger("irctc.registry.port", 1099));
+        LoadGenerator generator = new LoadGenerator(registry);
+        int initiallyAvailable = generator.reservationService.getAvailableSeats(generator.trainNumber,
+            generator.journeyDate, generator.travelClass);
+        generator.run();
+        generator.report();
+        boolean consistent = generator.verify(initiallyAvailable);
+        System.exit(consistent ? 0 : 1);
+    }
+
+    public void run() throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(users);
+        long interval = (long) (1e9 / rate);
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        System.out.printf("Offering %.0f req/s from %d users for %ds against train %d %s on %s%n",
+            rate, users, TimeUnit.NANOSECONDS.toSeconds(durationNanos), trainNumber, travelClass, journeyDate);
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long scheduled = due;
+            Operation operation = pickOperation();
+            workers.execute(() -> perform(operation, scheduled));
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void perform(Operation operation, long scheduled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            switch (operation) {
+                case BOOK:
+                    String userId = "load-user-" + random.nextInt(users);
+                    IIRCTCService.BookingDetails booking = bookingService.bookTicket(new BookingRequest(
+                        trainNumber, journeyDate, travelClass, 1 + random.nextInt(maxSeats), userId));
+                    confirmed.add(booking.bookingId);
+                    cancellable.add(booking);
+                    break;
+                case CANCEL:
+                    IIRCTCService.BookingDetails target = cancellable.pollFirst();
+                    if (target == null) {
+                        cancelsWithoutBooking.incrementAndGet();
+                        return;
+                    }
+                    int count = 1 + random.nextInt(target.numSeats);
+                    BookingResult result = cancellationService.cancelBooking(target.bookingId, count,
+                        UUID.randomUUID().toString());
+                    if (!result.isSuccess()) {
+                        cancellable.add(target);
+                        throw new IllegalStateException(result.error);
+                    }
+                    if (result.booking.numSeats > 0) {
+                        cancellable.add(result.booking);
+                    }
+                    break;
+                case AVAILABILITY:
+                    reservationService.getAvailableSeats(trainNumber, journeyDate, travelClass);
+                    break;
+            }
+            latency[operation.ordinal()].record(System.nanoTime() - scheduled);
+        } catch (Exception e) {
+            if (OverloadException.in(e) != null) {
+                rejected[operation.ordinal()].incrementAndGet();
+                return;
+            }
+            errors[operation.ordinal()].incrementAndGet();
+        }
+    }
+
+    public void report() {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%-13s %8s %7s %8s %9s %10s %10s %10s %10s %10s%n",
+            "operation", "ok", "errors", "rejected", "ok/s", "mean", "p50", "p99", "p99.9", "max");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram h = latency[operation.ordinal()];
+            System.out.printf("%-13s %8d %7d %8d %9.1f %10s %10s %10s %10s %10s%n",
+                operation.name().toLowerCase(), h.count(), errors[operation.ordinal()].get(),
+                rejected[operation.ordinal()].get(), h.count() / seconds,
+                LatencyHistogram.format((long) h.meanNanos()), LatencyHistogram.format(h.valueAtPercentile(50)),
+                LatencyHistogram.format(h.valueAtPercentile(99)), LatencyHistogram.format(h.valueAtPercentile(99.9)),
+                LatencyHistogram.format(h.maxNanos()));
+        }
+        if (cancelsWithoutBooking.get() > 0) {
+            System.out.println(cancelsWithoutBooking.get() + " cancels skipped, no booking was left to cancel");
+        }
+    }
+
+    // Reads back every booking confirmed during the run and checks the pool was not oversold
+    public boolean verify(int initiallyAvailable) throws Exception {
+        Set<String> seatsSold = new HashSet<>();
+        int seatsBooked = 0;
+        boolean consistent = true;
+        for (long bookingId : confirmed) {
+            IIRCTCService.BookingDetails booking = bookingService.getBooking(bookingId);
+            if (!booking.status.isCancellable()) {
+                continue;
+            }
+            seatsBooked += booking.numSeats;
+            if (booking.seats != null) {
+                for (int i = 0; i < booking.seats.size(); i++) {
+                    if (!seatsSold.add(booking.seats.seatLabel(i))) {
+                        System.out.println("OVERSOLD: seat " + booking.seats.seatLabel(i) + " is in more than one booking");
+                        consistent = false;
+                    }
+                }
+            }
+        }
+        int available = reservationService.getAvailableSeats(trainNumber, journeyDate, travelClass);
+        System.out.println("Seats still booked from this run: " + seatsBooked + ", available before: "
+            + initiallyAvailable + ", after: " + available);
+        if (available < 0 || seatsBooked > initiallyAvailable) {
+            System.out.println("OVERSOLD: more seats booked than the pool had");
+            consistent = false;
+        } else if (initiallyAvailable - available != seatsBooked) {
+            System.out.println("MISMATCH: availability moved by " + (initiallyAvailable - available)
+                + " seats but " + seatsBooked + " are booked");
+            consistent = false;
+        }
+        System.out.println(consistent ? "No seats oversold" : "Inventory check FAILED");
+        return consistent;
+    }
+
+    private Operation pickOperation() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (Operation operation : Operation.values()) {
+            if (roll < cumulativeWeights[operation.ordinal()]) {
+                return operation;
+            }
+        }
+        return Operation.AVAILABILITY;
+    }
+
+    // e.g. "book=60,cancel=20,availability=20"; operations left out get no weight
+    private void parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split("=");
+            weights.put(Operation.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            total += weights.getOrDefault(operation, 0);
+            cumulativeWeights[operation.ordinal()] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("load.mix needs at least one positive weight: " + mix);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package common;
+
+import java.time.LocalDate;
+
+// Seat availability per (train, date, class) pool at one point in the publisher's sequence.
+// A full snapshot lists every pool; a delta lists only the pools that changed since the
+// previous sequence number. Counts are absolute, so re-applying an entry is harmless.
+public class AvailabilitySnapshot implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final long sequence;
+    public final boolean full;
+    public final String[] pools;
+    public final int[] available;
+
+    public AvailabilitySnapshot(long sequence, boolean full, String[] pools, int[] available) {
+        this.sequence = sequence;
+        this.full = full;
+        this.pools = pools;
+        this.available = available;
+    }
+
+    public static String poolKey(int trainNumber, LocalDate journeyDate, String travelClass) {
+        return trainNumber + "/" + (journeyDate == null ? "-" : journeyDate.toString()) + "/" + travelClass;
+    }
+}
@@ -0,0 +1,20 @@
+package common;
+
+import java.util.List;
+
+// One page of a booking history query, newest first. Pass nextCursor back to get the
+// following page; it is 0 when there are no more bookings.
+public class BookingPage implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final List<IIRCTCService.BookingDetails> bookings;
+    public final long nextCursor;
+
+    public BookingPage(List<IIRCTCService.BookingDetails> bookings, long nextCursor) {
+        this.bookings = bookings;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != 0;
+    }
+}
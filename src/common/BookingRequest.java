@@ -0,0 +1,48 @@
+package common;
+
+import java.time.LocalDate;
+
+// One item of a booking call: how many seats on which train, date and class, and for which
+// legs of the route (all of them unless stops are given)
+public class BookingRequest implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int trainNumber;
+    public final LocalDate journeyDate;
+    public final String travelClass;
+    public final int numSeats;
+    public final String userId;
+    // Join the waitlist instead of failing when the pool is sold out
+    public final boolean waitlistIfFull;
+    public final long legs;
+
+    public BookingRequest(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) {
+        this(trainNumber, journeyDate, travelClass, numSeats, null);
+    }
+
+    public BookingRequest(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, String userId) {
+        this(trainNumber, journeyDate, travelClass, numSeats, userId, false);
+    }
+
+    public BookingRequest(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, String userId,
+                          boolean waitlistIfFull) {
+        this(trainNumber, journeyDate, travelClass, numSeats, userId, waitlistIfFull, SeatAllocation.ALL_LEGS);
+    }
+
+    // Boarding at stop fromStop and leaving at stop toStop, the first stop of the route being 0
+    public BookingRequest(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, String userId,
+                          boolean waitlistIfFull, int fromStop, int toStop) {
+        this(trainNumber, journeyDate, travelClass, numSeats, userId, waitlistIfFull, SeatAllocation.legs(fromStop, toStop));
+    }
+
+    // legs as in SeatAllocation.legs, ALL_LEGS for the whole route
+    public BookingRequest(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, String userId,
+                          boolean waitlistIfFull, long legs) {
+        this.userId = userId;
+        this.legs = legs;
+        this.waitlistIfFull = waitlistIfFull;
+        this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
+        this.travelClass = travelClass;
+        this.numSeats = numSeats;
+    }
+}
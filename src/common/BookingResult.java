@@ -0,0 +1,32 @@
+package common;
+
+// Per-item outcome of a batch call, either the resulting booking or the reason it failed
+public class BookingResult implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final IIRCTCService.BookingDetails booking;
+    public final String error;
+    // Paid back by a cancellation, after cancellation charges
+    public final long refundPaise;
+
+    private BookingResult(IIRCTCService.BookingDetails booking, String error, long refundPaise) {
+        this.booking = booking;
+        this.error = error;
+        this.refundPaise = refundPaise;
+    }
+
+    public static BookingResult success(IIRCTCService.BookingDetails booking) {
+        return new BookingResult(booking, null, 0);
+    }
+
+    public static BookingResult refunded(IIRCTCService.BookingDetails booking, long refundPaise) {
+        return new BookingResult(booking, null, refundPaise);
+    }
+
+    public static BookingResult failure(IIRCTCService.BookingDetails booking, String error) {
+        return new BookingResult(booking, error, 0);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
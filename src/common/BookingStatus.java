@@ -0,0 +1,33 @@
+package common;
+
+public enum BookingStatus {
+    PENDING("PENDING"),
+    PAID("PAID"),
+    CONFIRMED("CONFIRMED"),
+    FAILED("FAILED"),
+    PARTIALLY_CANCELLED("PARTIALLY CANCELLED"),
+    CANCELLED("CANCELLED"),
+    // Added last: the wire format sends the ordinal
+    WAITLISTED("WAITLISTED");
+
+    private static final BookingStatus[] VALUES = values();
+    private final String label;
+
+    BookingStatus(String label) {
+        this.label = label;
+    }
+
+    public boolean isCancellable() {
+        return this == CONFIRMED || this == PARTIALLY_CANCELLED;
+    }
+
+    // The ordinal is the code used on the wire and in the booking ledger
+    public static BookingStatus fromCode(int code) {
+        return VALUES[code];
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
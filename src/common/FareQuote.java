@@ -0,0 +1,29 @@
+package common;
+
+import java.time.LocalDate;
+
+// The price of numSeats seats as of rulesVersion of the fare rules. Not a promise: a booking is
+// charged at the rules in force when it is made.
+public class FareQuote implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int trainNumber;
+    public final LocalDate journeyDate;
+    public final String travelClass;
+    public final String quota;
+    public final int numSeats;
+    public final long farePerSeatPaise;
+    public final long totalPaise;
+    public final long rulesVersion;
+
+    public FareQuote(int trainNumber, LocalDate journeyDate, String travelClass, String quota, int numSeats,
+                     long farePerSeatPaise, long rulesVersion) {
+        this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
+        this.travelClass = travelClass;
+        this.quota = quota;
+        this.numSeats = numSeats;
+        this.farePerSeatPaise = farePerSeatPaise;
+        this.totalPaise = farePerSeatPaise * numSeats;
+        this.rulesVersion = rulesVersion;
+    }
+}
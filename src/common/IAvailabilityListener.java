@@ -0,0 +1,9 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Implemented by clients that want availability pushed to them instead of polling
+public interface IAvailabilityListener extends Remote {
+    void availabilityChanged(AvailabilitySnapshot delta) throws RemoteException;
+}
@@ -0,0 +1,10 @@
+package common;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Implemented by clients that want to hear when one of their bookings changes on the server
+// without asking, e.g. a waitlisted booking that has been confirmed
+public interface IBookingListener extends Remote {
+    void bookingChanged(IIRCTCService.BookingDetails booking) throws RemoteException;
+}
@@ -1,22 +1,127 @@
 package common;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.LocalDate;
 
 public interface IIRCTCService extends Remote {
-    // Common data structure for booking details
-    public static class BookingDetails implements java.io.Serializable {
-        private static final long serialVersionUID = 1L;
-        public int bookingId;
+    // Common data structure for booking details.
+    // Written by hand rather than with default serialization: no per-field descriptors, the
+    // status goes as one byte and money as a long count of paise.
+    public static class BookingDetails implements Externalizable {
+        private static final long serialVersionUID = 5L;
+        // Version 2 added legs
+        private static final int FORMAT_VERSION = 2;
+        private static final int NO_DATE = Integer.MIN_VALUE;
+
+        public long bookingId;
         public int numSeats;
-        public double amount;
-        public String status;
-        
-        public BookingDetails(int bookingId, int numSeats, double amount) {
+        public long amountPaise;
+        public volatile BookingStatus status;
+        public int trainNumber;
+        public LocalDate journeyDate;
+        public String travelClass;
+        public SeatAllocation seats;
+        public String userId;
+        public int totalSeats;
+        public long legs = SeatAllocation.ALL_LEGS;
+
+        // Needed by Externalizable
+        public BookingDetails() {
+        }
+
+        public BookingDetails(long bookingId, int numSeats, long amountPaise) {
             this.bookingId = bookingId;
             this.numSeats = numSeats;
-            this.amount = amount;
-            this.status = "PENDING";
+            this.totalSeats = numSeats;
+            this.amountPaise = amountPaise;
+            this.status = BookingStatus.PENDING;
+        }
+
+        public BookingDetails(long bookingId, BookingRequest request, long amountPaise) {
+            this(bookingId, request.numSeats, amountPaise);
+            this.trainNumber = request.trainNumber;
+            this.journeyDate = request.journeyDate;
+            this.travelClass = request.travelClass;
+            this.userId = request.userId;
+            this.legs = request.legs;
+        }
+
+        public double amountInRupees() {
+            return amountPaise / 100.0;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(bookingId);
+            out.writeShort(numSeats);
+            out.writeShort(totalSeats);
+            out.writeLong(amountPaise);
+            out.writeByte(status.ordinal());
+            out.writeInt(trainNumber);
+            out.writeInt(journeyDate == null ? NO_DATE : (int) journeyDate.toEpochDay());
+            writeString(out, travelClass);
+            writeString(out, userId);
+            // The allocation shares the booking's train, date and class, so only seats go out
+            if (seats == null) {
+                out.writeShort(-1);
+            } else {
+                out.writeShort(seats.size());
+                for (int i = 0; i < seats.size(); i++) {
+                    out.writeShort(seats.coaches[i]);
+                    out.writeShort(seats.seats[i]);
+                }
+            }
+            out.writeLong(legs);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > FORMAT_VERSION) {
+                throw new IOException("Unsupported BookingDetails format " + version);
+            }
+            bookingId = in.readLong();
+            numSeats = in.readShort();
+            totalSeats = in.readShort();
+            amountPaise = in.readLong();
+            status = BookingStatus.fromCode(in.readUnsignedByte());
+            trainNumber = in.readInt();
+            int epochDay = in.readInt();
+            journeyDate = epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+            travelClass = readString(in);
+            userId = readString(in);
+            int seatCount = in.readShort();
+            int[] coaches = null;
+            int[] seatNumbers = null;
+            if (seatCount >= 0) {
+                coaches = new int[seatCount];
+                seatNumbers = new int[seatCount];
+                for (int i = 0; i < seatCount; i++) {
+                    coaches[i] = in.readShort();
+                    seatNumbers[i] = in.readShort();
+                }
+            }
+            legs = version >= 2 ? in.readLong() : SeatAllocation.ALL_LEGS;
+            if (coaches != null) {
+                seats = new SeatAllocation(trainNumber, journeyDate, travelClass, coaches, seatNumbers, legs);
+            }
+        }
+
+        private static void writeString(ObjectOutput out, String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        private static String readString(ObjectInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
         }
     }
-} 
\ No newline at end of file
+}
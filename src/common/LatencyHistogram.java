@@ -0,0 +1,113 @@
+package common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram in nanoseconds. Buckets are linear within each power of two
+// (64 per octave), so any recorded value is reported within about 1.6% of its true value,
+// from a single nanosecond up to MAX_TRACKABLE_NANOS. Recording is one array increment and
+// is safe from any number of threads.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 34;
+    public static final long MAX_TRACKABLE_NANOS = (1L << (MAX_SHIFT + SUB_BUCKET_BITS + 1)) - 1; // ~36 minutes
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_SHIFT + 2) * SUB_BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        counts.incrementAndGet(bucketOf(value));
+        totalCount.increment();
+        totalNanos.add(value);
+        if (value > maxNanos.get()) {
+            maxNanos.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long count() {
+        return totalCount.sum();
+    }
+
+    public double meanNanos() {
+        long count = count();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100)
+    public long valueAtPercentile(double percentile) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), maxNanos());
+            }
+        }
+        return maxNanos();
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+        totalCount.add(other.totalCount.sum());
+        totalNanos.add(other.totalNanos.sum());
+        maxNanos.accumulateAndGet(other.maxNanos(), Math::max);
+    }
+
+    // Not atomic with concurrent recording; callers reset between measurement intervals
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+
+    // e.g. "n=1000 mean=1.2ms p50=1.1ms p99=3.0ms p99.9=4.2ms max=5.0ms"
+    public String summary() {
+        return "n=" + count() + " mean=" + format((long) meanNanos())
+            + " p50=" + format(valueAtPercentile(50)) + " p99=" + format(valueAtPercentile(99))
+            + " p99.9=" + format(valueAtPercentile(99.9)) + " max=" + format(maxNanos());
+    }
+
+    public static String format(long nanos) {
+        if (nanos < 10_000) {
+            return nanos + "ns";
+        }
+        if (nanos < 10_000_000) {
+            return String.format("%.1fus", nanos / 1e3);
+        }
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    // Values below 2 * SUB_BUCKETS get a bucket each; above that every octave is split into
+    // SUB_BUCKETS equal slices
+    private static int bucketOf(long value) {
+        int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueIn(int bucket) {
+        int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+        long subBucket = bucket - (long) shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
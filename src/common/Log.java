@@ -0,0 +1,95 @@
+package common;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-side logging. Callers only format and enqueue the line; a background thread does the
+// console write, so a slow terminal never stalls a request. Messages below -Dirctc.log.level
+// (DEBUG, INFO, WARN or ERROR, default INFO) are dropped before the timestamp and thread are
+// added, but the caller has built the message by then; hot paths check isEnabled first. When
+// the queue is full new lines are dropped and counted rather than blocking the caller.
+public final class Log {
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level THRESHOLD = Level.valueOf(System.getProperty("irctc.log.level", "INFO").toUpperCase());
+    private static final BlockingQueue<String[]> QUEUE = new ArrayBlockingQueue<>(8192);
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    static {
+        Thread writer = new Thread(Log::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(THRESHOLD) >= 0;
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message + ": " + error);
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    public static void log(Level level, String message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        String[] entry = {level.name(), LocalTime.now() + " " + level + " [" + Thread.currentThread().getName() + "] " + message};
+        if (!QUEUE.offer(entry)) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    public static long droppedCount() {
+        return DROPPED.get();
+    }
+
+    private static void drain() {
+        while (true) {
+            try {
+                write(QUEUE.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Writes out whatever is still queued, used on shutdown
+    private static void flush() {
+        String[] entry;
+        while ((entry = QUEUE.poll()) != null) {
+            write(entry);
+        }
+        long dropped = DROPPED.get();
+        if (dropped > 0) {
+            System.err.println(dropped + " log lines dropped while the log queue was full");
+        }
+    }
+
+    private static void write(String[] entry) {
+        PrintStream out = entry[0].equals("WARN") || entry[0].equals("ERROR") ? System.err : System.out;
+        out.println(entry[1]);
+    }
+}
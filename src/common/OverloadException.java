@@ -0,0 +1,25 @@
+package common;
+
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+
+// Thrown instead of queueing when a service is past its admission limit. The request was not
+// started, so it is always safe to send again after retryAfterMillis.
+public class OverloadException extends RemoteException {
+    private static final long serialVersionUID = 1L;
+    public final long retryAfterMillis;
+
+    public OverloadException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    // RMI hands a RemoteException thrown by the server to the caller wrapped in a
+    // ServerException; returns the overload underneath, or null if it was something else
+    public static OverloadException in(Throwable e) {
+        if (e instanceof ServerException) {
+            e = e.getCause();
+        }
+        return e instanceof OverloadException ? (OverloadException) e : null;
+    }
+}
@@ -0,0 +1,35 @@
+package common;
+
+// Which reservation node owns which trains. Every date and class of a train lives on the same
+// node, so a booking never spans partitions. Nodes are listed as "host:port" of the registry
+// each node binds its ReservationService in.
+public class PartitionMap implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final long version;
+    public final String[] nodes;
+
+    public PartitionMap(long version, String[] nodes) {
+        if (nodes.length == 0) {
+            throw new IllegalArgumentException("A partition map needs at least one node");
+        }
+        this.version = version;
+        this.nodes = nodes;
+    }
+
+    public int partitionCount() {
+        return nodes.length;
+    }
+
+    // Spreads consecutive train numbers over the nodes rather than relying on them being random
+    public int partitionOf(int trainNumber) {
+        return Math.floorMod(trainNumber * 0x9E3779B9, nodes.length);
+    }
+
+    public static PartitionMap parse(long version, String nodeList) {
+        String[] nodes = nodeList.split(",");
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = nodes[i].trim();
+        }
+        return new PartitionMap(version, nodes);
+    }
+}
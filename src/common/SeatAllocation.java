@@ -0,0 +1,78 @@
+package common;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+// Seats handed out by the reservation service for one (train, date, class). legs says which
+// legs of the route the seats are taken for: bit i is the leg from stop i to stop i + 1.
+public class SeatAllocation implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    // From the first stop to the last, whatever the route
+    public static final long ALL_LEGS = -1L;
+    // Routes have at most this many legs, one bit each
+    public static final int MAX_LEGS = 64;
+
+    public final int trainNumber;
+    public final LocalDate journeyDate;
+    public final String travelClass;
+    public final int[] coaches;
+    public final int[] seats;
+    public final long legs;
+
+    public SeatAllocation(int trainNumber, LocalDate journeyDate, String travelClass, int[] coaches, int[] seats) {
+        this(trainNumber, journeyDate, travelClass, coaches, seats, ALL_LEGS);
+    }
+
+    public SeatAllocation(int trainNumber, LocalDate journeyDate, String travelClass, int[] coaches, int[] seats,
+                          long legs) {
+        this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
+        this.travelClass = travelClass;
+        this.coaches = coaches;
+        this.seats = seats;
+        this.legs = legs;
+    }
+
+    // The legs travelled boarding at stop fromStop and leaving at stop toStop, counting the
+    // first stop of the route as 0
+    public static long legs(int fromStop, int toStop) {
+        if (fromStop < 0 || toStop <= fromStop || toStop > MAX_LEGS) {
+            throw new IllegalArgumentException("No journey from stop " + fromStop + " to stop " + toStop);
+        }
+        return (-1L >>> (MAX_LEGS - (toStop - fromStop))) << fromStop;
+    }
+
+    public int size() {
+        return seats.length;
+    }
+
+    public SeatAllocation first(int count) {
+        return slice(0, count);
+    }
+
+    public SeatAllocation last(int count) {
+        return slice(seats.length - count, seats.length);
+    }
+
+    private SeatAllocation slice(int from, int to) {
+        return new SeatAllocation(trainNumber, journeyDate, travelClass,
+            Arrays.copyOfRange(coaches, from, to), Arrays.copyOfRange(seats, from, to), legs);
+    }
+
+    // Coach labels follow the class code, e.g. seat 12 in the second 3A coach is "3A2/12"
+    public String seatLabel(int i) {
+        return travelClass + (coaches[i] + 1) + "/" + (seats[i] + 1);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < seats.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(seatLabel(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package common;
+
+import java.time.LocalDate;
+
+// Capacity set aside for a booking while its payment is in flight. For the whole route the
+// seats are only picked when the hold is committed; a hold on some legs picks them straight
+// away. An uncommitted hold lapses at expiresAtMillis.
+public class SeatHold implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final long holdId;
+    public final int trainNumber;
+    public final LocalDate journeyDate;
+    public final String travelClass;
+    public final int numSeats;
+    public final long legs;
+    public final long expiresAtMillis;
+
+    public SeatHold(long holdId, int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long expiresAtMillis) {
+        this(holdId, trainNumber, journeyDate, travelClass, numSeats, SeatAllocation.ALL_LEGS, expiresAtMillis);
+    }
+
+    public SeatHold(long holdId, int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs,
+                    long expiresAtMillis) {
+        this.legs = legs;
+        this.holdId = holdId;
+        this.trainNumber = trainNumber;
+        this.journeyDate = journeyDate;
+        this.travelClass = travelClass;
+        this.numSeats = numSeats;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+}
@@ -0,0 +1,29 @@
+package common;
+
+import java.rmi.Remote;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Services running in this JVM, under the same names they are bound to in the RMI registry.
+// A service that finds its dependency here calls the implementation directly instead of going
+// through its stub, so co-located calls skip serialization and the loopback socket entirely.
+public final class ServiceDirectory {
+    private static final Map<String, Remote> LOCAL_SERVICES = new ConcurrentHashMap<>();
+
+    private ServiceDirectory() {
+    }
+
+    public static void register(String name, Remote service) {
+        LOCAL_SERVICES.put(name, service);
+    }
+
+    public static void unregister(String name) {
+        LOCAL_SERVICES.remove(name);
+    }
+
+    // Returns null when the service is not deployed in this JVM
+    public static <T extends Remote> T lookupLocal(String name, Class<T> type) {
+        Remote service = LOCAL_SERVICES.get(name);
+        return type.isInstance(service) ? type.cast(service) : null;
+    }
+}
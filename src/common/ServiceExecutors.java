@@ -0,0 +1,47 @@
+package common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Worker pools for blocking service stages. With -Dirctc.virtualThreads=true on a Java 21+
+// runtime every task gets its own virtual thread, so a stage blocked on the payment gateway or
+// a ledger flush parks instead of holding on to a platform thread. Otherwise, or on an older
+// runtime, a fixed pool of platform threads is used as before.
+public final class ServiceExecutors {
+    private static final boolean VIRTUAL_THREADS_REQUESTED = Boolean.getBoolean("irctc.virtualThreads");
+    private static final boolean VIRTUAL_THREADS = VIRTUAL_THREADS_REQUESTED && virtualThreadsSupported();
+
+    private ServiceExecutors() {
+    }
+
+    public static boolean usingVirtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+
+    public static ExecutorService newWorkerPool(String name, int platformThreads) {
+        if (VIRTUAL_THREADS) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                Log.warn("Falling back to platform threads for " + name + ": " + e);
+            }
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(platformThreads, r -> {
+            Thread t = new Thread(r, name + "-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static boolean virtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            Log.warn("irctc.virtualThreads needs Java 21 or later, using platform threads");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.UnknownHostException;
+import java.rmi.registry.LocateRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Finds services by name. One in this JVM is returned as is; otherwise the caller gets a stand-in
+// for the registry stub that it can keep for good. The stub is cached, and a call that fails
+// without reaching the server (refused connection, or a server that restarted and no longer
+// exports the object) looks the service up again and is retried once on the new stub, so a
+// client carries on as soon as the server is back.
+//
+// Lookups go through the registries in -Dirctc.registries (host:port,host:port), starting
+// with the last one that answered, and go round them again after a jittered exponential
+// backoff: -Dirctc.locator.attempts rounds (8), waiting up to -Dirctc.locator.baseDelayMillis
+// (50) doubled each round and capped at -Dirctc.locator.maxDelayMillis (2000). Without
+// irctc.registries the one registry is -Dirctc.registry.host and -Dirctc.registry.port.
+public final class ServiceLocator {
+    private final String[] hosts;
+    private final int[] ports;
+    private final int attempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    // Index of the registry that answered last, tried first next time
+    private volatile int preferred;
+    private final Map<String, Remote> proxies = new ConcurrentHashMap<>();
+    private final Map<String, List<Runnable>> reconnectActions = new ConcurrentHashMap<>();
+
+    public ServiceLocator(String registries, int attempts, long baseDelayMillis, long maxDelayMillis) {
+        String[] entries = registries.split(",");
+        this.hosts = new String[entries.length];
+        this.ports = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            String entry = entries[i].trim();
+            int colon = entry.lastIndexOf(':');
+            hosts[i] = colon < 0 ? entry : entry.substring(0, colon);
+            ports[i] = colon < 0 ? 1099 : Integer.parseInt(entry.substring(colon + 1));
+        }
+        this.attempts = Math.max(1, attempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public static ServiceLocator fromSystemProperties() {
+        String registries = System.getProperty("irctc.registries",
+            System.getProperty("irctc.registry.host", "localhost") + ":" + Integer.getInteger("irctc.registry.port", 1099));
+        return new ServiceLocator(registries, Integer.getInteger("irctc.locator.attempts", 8),
+            Long.getLong("irctc.locator.baseDelayMillis", 50), Long.getLong("irctc.locator.maxDelayMillis", 2000));
+    }
+
+    // The locator every service and client in this JVM shares, so they share stubs too
+    public static ServiceLocator shared() {
+        return Shared.INSTANCE;
+    }
+
+    // Created on first use, after main has had the chance to set properties
+    private static final class Shared {
+        static final ServiceLocator INSTANCE = fromSystemProperties();
+    }
+
+    // Longest a lookup keeps trying before giving up, not counting the registry calls themselves
+    public long maxWaitMillis() {
+        long total = 0;
+        for (int round = 0; round < attempts - 1; round++) {
+            total += backoffCap(round);
+        }
+        return total;
+    }
+
+    // Finds the service now, waiting for it if no registry has it yet. Throws once every
+    // round has failed.
+    public <T extends Remote> T lookup(String name, Class<T> type) throws RemoteException {
+        T local = ServiceDirectory.lookupLocal(name, type);
+        if (local != null) {
+            return local;
+        }
+        Remote existing = proxies.get(name);
+        if (type.isInstance(existing)) {
+            return type.cast(existing);
+        }
+        Stub<T> stub = new Stub<>(name, type, resolve(name, type));
+        T proxy = type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, stub));
+        Remote raced = proxies.putIfAbsent(name, proxy);
+        return type.isInstance(raced) ? type.cast(raced) : proxy;
+    }
+
+    // Runs after the named service had to be looked up again, typically because the server
+    // restarted. A new server has forgotten its subscribers, so this is where to subscribe again.
+    public void onReconnect(String name, Runnable action) {
+        reconnectActions.computeIfAbsent(name, key -> new CopyOnWriteArrayList<>()).add(action);
+    }
+
+    private <T extends Remote> T resolve(String name, Class<T> type) throws RemoteException {
+        Exception last = null;
+        for (int round = 0; round < attempts; round++) {
+            if (round > 0) {
+                sleep(ThreadLocalRandom.current().nextLong(backoffCap(round - 1) + 1));
+            }
+            int first = preferred;
+            for (int i = 0; i < hosts.length; i++) {
+                int r = (first + i) % hosts.length;
+                try {
+                    Remote found = LocateRegistry.getRegistry(hosts[r], ports[r]).lookup(name);
+                    if (!type.isInstance(found)) {
+                        throw new RemoteException(name + " at " + hosts[r] + ":" + ports[r] + " is not a " + type.getSimpleName());
+                    }
+                    if (r != first || round > 0) {
+                        Log.info("ServiceLocator: Found " + name + " at " + hosts[r] + ":" + ports[r]);
+                    }
+                    preferred = r;
+                    return type.cast(found);
+                } catch (NotBoundException | RemoteException e) {
+                    last = e;
+                }
+            }
+            Log.debug("ServiceLocator: Round " + (round + 1) + " of lookups for " + name + " failed: " + last.getMessage());
+        }
+        throw new RemoteException("No registry has " + name + " after " + attempts + " attempts", last);
+    }
+
+    private long backoffCap(int round) {
+        return Math.min(maxDelayMillis, baseDelayMillis << Math.min(round, 30));
+    }
+
+    private static void sleep(long millis) throws RemoteException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while looking up services");
+        }
+    }
+
+    // These mean the call was never delivered, so making it again on a new stub is safe
+    private static boolean neverReachedServer(Throwable error) {
+        return error instanceof ConnectException || error instanceof ConnectIOException
+            || error instanceof NoSuchObjectException || error instanceof UnknownHostException;
+    }
+
+    private final class Stub<T extends Remote> implements InvocationHandler {
+        private final String name;
+        private final Class<T> type;
+        private volatile T current;
+
+        Stub(String name, Class<T> type, T current) {
+            this.name = name;
+            this.type = type;
+            this.current = current;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "ServiceLocator stub for " + name;
+                }
+            }
+            T stub = current;
+            try {
+                return method.invoke(stub, args);
+            } catch (InvocationTargetException e) {
+                if (!neverReachedServer(e.getCause())) {
+                    throw e.getCause();
+                }
+                Log.info("ServiceLocator: " + name + " unreachable (" + e.getCause().getClass().getSimpleName()
+                    + "), looking it up again");
+            }
+            try {
+                return method.invoke(refresh(stub), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        // Only the first caller to see a stub fail looks the service up; the rest use its result
+        private synchronized T refresh(T failed) throws RemoteException {
+            if (current == failed) {
+                current = resolve(name, type);
+                for (Runnable action : reconnectActions.getOrDefault(name, List.of())) {
+                    action.run();
+                }
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package common;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One train between two stations. journeyDate is the day the train leaves its first station,
+// which is the date to book it under; it is earlier than the departure date when the train
+// reaches fromStation after midnight. fromStop and toStop are the stations' positions on the
+// route, for booking just that part of it. available is per class, the seats free for the
+// whole route; more may be free for this part of it.
+public class TrainSearchResult implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    public final int trainNumber;
+    public final String trainName;
+    public final String fromStation;
+    public final String toStation;
+    public final LocalDate journeyDate;
+    public final int fromStop;
+    public final int toStop;
+    public final LocalDateTime departure;
+    public final LocalDateTime arrival;
+    public final int distanceKm;
+    public final String[] classes;
+    public final int[] available;
+
+    public TrainSearchResult(int trainNumber, String trainName, String fromStation, String toStation,
+                             LocalDate journeyDate, int fromStop, int toStop, LocalDateTime departure, LocalDateTime arrival, int distanceKm,
+                             String[] classes, int[] available) {
+        this.trainNumber = trainNumber;
+        this.trainName = trainName;
+        this.fromStation = fromStation;
+        this.toStation = toStation;
+        this.journeyDate = journeyDate;
+        this.fromStop = fromStop;
+        this.toStop = toStop;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.distanceKm = distanceKm;
+        this.classes = classes;
+        this.available = available;
+    }
+}
@@ -0,0 +1,178 @@
+package fare;
+
+import common.FareQuote;
+import common.Log;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Prices seats and refunds from the current FareTable. Fares are cached per (train, class,
+// date) for every quota at once. An entry is good for the rules version and the day it was
+// worked out on, since surge depends on how far off the journey is; a rules change bumps the
+// version and drops the cache. Never reads seat inventory.
+public class FareEngine implements FareEngineMBean {
+    private static final long NO_DATE = 0xFFFFF;
+    private static final int MAX_CACHED = Integer.getInteger("irctc.fare.cacheSize", 100_000);
+
+    private final String rulesPath;
+    private volatile FareTable table;
+    private final Map<Long, CachedFares> cache = new ConcurrentHashMap<>();
+    // LocalDate.now() looks up the time zone every call; this only does when the day is over
+    private volatile Today today = new Today();
+
+    private static class CachedFares {
+        final long version;
+        final long computedOn;
+        final long[] perQuota;
+
+        CachedFares(long version, long computedOn, long[] perQuota) {
+            this.version = version;
+            this.computedOn = computedOn;
+            this.perQuota = perQuota;
+        }
+    }
+
+    private static class Today {
+        final long epochDay;
+        final long endsAtMillis;
+
+        Today() {
+            LocalDate date = LocalDate.now();
+            this.epochDay = date.toEpochDay();
+            this.endsAtMillis = date.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
+    public FareEngine(FareRules rules) {
+        this(rules, null);
+    }
+
+    private FareEngine(FareRules rules, String rulesPath) {
+        this.rulesPath = rulesPath;
+        this.table = new FareTable(rules, 1);
+    }
+
+    // Rules from the properties file named by irctc.fare.rules, or the built-in ones
+    public static FareEngine fromSystemProperties() throws IOException {
+        String path = System.getProperty("irctc.fare.rules");
+        FareEngine engine = new FareEngine(path == null ? FareRules.defaults() : FareRules.load(path), path);
+        engine.registerMBean();
+        Log.info("FareEngine: Using " + (path == null ? "built-in fare rules" : "fare rules from " + path));
+        return engine;
+    }
+
+    // -1 for a quota the rules do not know
+    public int quotaIndex(String quota) {
+        return table.quotaIndex(quota);
+    }
+
+    // Quota, class and fare are all read from the same table, so a rules change halfway
+    // through cannot mix two versions. Throws IllegalArgumentException for a class or quota
+    // the rules do not know.
+    public FareQuote quote(int trainNumber, LocalDate journeyDate, String travelClass, String quota, int numSeats) {
+        FareTable current = table;
+        int quotaIndex = current.quotaIndex(quota);
+        if (quotaIndex < 0) {
+            throw new IllegalArgumentException("Unknown quota " + quota);
+        }
+        return new FareQuote(trainNumber, journeyDate, travelClass, quota, numSeats,
+            fare(current, trainNumber, journeyDate, classIndex(current, travelClass), quotaIndex), current.version);
+    }
+
+    // quotaIndex 0, the first quota in the rules, is there in every version. Throws
+    // IllegalArgumentException for a class the rules do not know.
+    public long farePerSeatPaise(int trainNumber, LocalDate journeyDate, String travelClass, int quotaIndex) {
+        FareTable current = table;
+        return fare(current, trainNumber, journeyDate, classIndex(current, travelClass), quotaIndex);
+    }
+
+    private static int classIndex(FareTable current, String travelClass) {
+        int classIndex = current.classIndex(travelClass);
+        if (classIndex < 0) {
+            throw new IllegalArgumentException("No fares for class " + travelClass);
+        }
+        return classIndex;
+    }
+
+    private long fare(FareTable current, int trainNumber, LocalDate journeyDate, int classIndex, int quotaIndex) {
+        long today = today();
+        long day = journeyDate == null ? NO_DATE : journeyDate.toEpochDay() & NO_DATE;
+        long key = ((long) trainNumber << 32) | (day << 12) | classIndex;
+        CachedFares cached = cache.get(key);
+        if (cached == null || cached.version != current.version || cached.computedOn != today) {
+            long[] perQuota = new long[current.quotaCount()];
+            int distanceKm = current.distanceKm(trainNumber);
+            int daysBefore = journeyDate == null ? Integer.MAX_VALUE : (int) (journeyDate.toEpochDay() - today);
+            for (int q = 0; q < perQuota.length; q++) {
+                perQuota[q] = current.farePaise(classIndex, distanceKm, q, daysBefore);
+            }
+            cached = new CachedFares(current.version, today, perQuota);
+            if (cache.size() >= MAX_CACHED) {
+                cache.clear();
+            }
+            cache.put(key, cached);
+        }
+        return cached.perQuota[quotaIndex];
+    }
+
+    private long today() {
+        Today current = today;
+        if (System.currentTimeMillis() >= current.endsAtMillis) {
+            current = new Today();
+            today = current;
+        }
+        return current.epochDay;
+    }
+
+    // What goes back for seats that cost paidPaise, by the refund slab for the time left
+    // before the journey date starts
+    public long refundPaise(long paidPaise, LocalDate journeyDate) {
+        long hoursBefore = journeyDate == null ? Integer.MAX_VALUE
+            : (journeyDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                - System.currentTimeMillis()) / 3_600_000;
+        return table.refundPaise(paidPaise, hoursBefore);
+    }
+
+    // Quotes already handed out keep their price; the next one is worked out afresh
+    public synchronized void updateRules(FareRules rules) {
+        table = new FareTable(rules, table.version + 1);
+        cache.clear();
+        Log.info("FareEngine: Fare rules now at version " + table.version);
+    }
+
+    @Override
+    public void reloadRules() throws IOException {
+        if (rulesPath == null) {
+            throw new IOException("Built-in fare rules; start with -Dirctc.fare.rules=<file> to reload from a file");
+        }
+        updateRules(FareRules.load(rulesPath));
+    }
+
+    @Override
+    public long getRulesVersion() {
+        return table.version;
+    }
+
+    @Override
+    public int getCachedQuotes() {
+        return cache.size();
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("irctc:type=FareEngine");
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception e) {
+            Log.warn("FareEngine: JMX registration failed: " + e);
+        }
+    }
+}
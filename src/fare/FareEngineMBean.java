@@ -0,0 +1,13 @@
+package fare;
+
+import java.io.IOException;
+
+// JMX view of the fare engine, under irctc:type=FareEngine
+public interface FareEngineMBean {
+    long getRulesVersion();
+
+    int getCachedQuotes();
+
+    // Reads the irctc.fare.rules file again and drops every cached quote
+    void reloadRules() throws IOException;
+}
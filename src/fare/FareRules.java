@@ -0,0 +1,174 @@
+package fare;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+// Pricing inputs as people write them: per-km rates for each class in each distance band,
+// quota and surge percentages, and refund slabs by time left before departure. FareTable
+// compiles them into the form quoting reads. Can be loaded from a properties file, e.g.
+//
+//   classes=1A,2A,3A,SL
+//   bands=500,1000,2000            upper bounds in km; the band after the last is open-ended
+//   rate.1A=380,340,300,260        paise per km in each band
+//   minimum.1A=50000               paise, before quota and surge
+//   reservation.1A=6000            paise per seat, added after quota and surge
+//   quotas=GENERAL,TATKAL
+//   quota.TATKAL=130               percent of the general fare
+//   surge.days=1,3,7               days before the journey, ascending
+//   surge.percent=130,120,110      applied up to and including that many days out
+//   refund.hours=48,12,4           hours before the journey, descending
+//   refund.percent=90,75,50,0      refunded with at least that much notice, the last for less
+//   distance.12951=1384            km per train; distance.default for the rest
+public class FareRules {
+    public final String[] classes;
+    public final int[] bandUpperKm;
+    // [class][band]
+    public final int[][] ratePaisePerKm;
+    public final long[] minimumPaise;
+    public final long[] reservationPaise;
+    public final String[] quotas;
+    public final int[] quotaPercent;
+    public final int[] surgeDays;
+    public final int[] surgePercent;
+    public final int[] refundHours;
+    public final int[] refundPercent;
+    public final Map<Integer, Integer> distanceKm;
+    public final int defaultDistanceKm;
+
+    public FareRules(String[] classes, int[] bandUpperKm, int[][] ratePaisePerKm, long[] minimumPaise,
+                     long[] reservationPaise, String[] quotas, int[] quotaPercent, int[] surgeDays,
+                     int[] surgePercent, int[] refundHours, int[] refundPercent, Map<Integer, Integer> distanceKm,
+                     int defaultDistanceKm) {
+        if (classes.length == 0 || quotas.length == 0) {
+            throw new IllegalArgumentException("Fare rules need at least one class and one quota");
+        }
+        if (ratePaisePerKm.length != classes.length || minimumPaise.length != classes.length
+                || reservationPaise.length != classes.length) {
+            throw new IllegalArgumentException("Every class needs rates, a minimum and a reservation charge");
+        }
+        for (int[] rates : ratePaisePerKm) {
+            if (rates.length != bandUpperKm.length + 1) {
+                throw new IllegalArgumentException("Every class needs one rate per distance band");
+            }
+        }
+        for (int b = 1; b < bandUpperKm.length; b++) {
+            if (bandUpperKm[b] <= bandUpperKm[b - 1]) {
+                throw new IllegalArgumentException("Distance bands must be ascending");
+            }
+        }
+        if (quotaPercent.length != quotas.length || surgePercent.length != surgeDays.length
+                || refundPercent.length != refundHours.length + 1) {
+            throw new IllegalArgumentException("Quota, surge and refund percentages do not match their thresholds");
+        }
+        this.classes = classes;
+        this.bandUpperKm = bandUpperKm;
+        this.ratePaisePerKm = ratePaisePerKm;
+        this.minimumPaise = minimumPaise;
+        this.reservationPaise = reservationPaise;
+        this.quotas = quotas;
+        this.quotaPercent = quotaPercent;
+        this.surgeDays = surgeDays;
+        this.surgePercent = surgePercent;
+        this.refundHours = refundHours;
+        this.refundPercent = refundPercent;
+        this.distanceKm = distanceKm;
+        this.defaultDistanceKm = defaultDistanceKm;
+    }
+
+    // The trains ReservationServiceImpl registers. GN on the default train, which has no
+    // distance, stays at the flat ₹100 a seat it always cost.
+    public static FareRules defaults() {
+        Map<Integer, Integer> distances = new HashMap<>();
+        distances.put(12951, 1384);
+        distances.put(12627, 2444);
+        distances.put(12301, 1447);
+        return new FareRules(
+            new String[]{"1A", "2A", "3A", "CC", "SL", "2S", "GN"},
+            new int[]{500, 1000, 2000},
+            new int[][]{
+                {380, 340, 300, 260},
+                {230, 205, 180, 160},
+                {160, 145, 130, 115},
+                {130, 120, 110, 100},
+                {60, 54, 48, 42},
+                {35, 32, 29, 26},
+                {25, 22, 20, 18},
+            },
+            new long[]{50000, 30000, 20000, 15000, 10000, 5000, 10000},
+            new long[]{6000, 5000, 4000, 4000, 2000, 1500, 0},
+            new String[]{"GENERAL", "TATKAL", "SENIOR"},
+            new int[]{100, 130, 60},
+            new int[]{1, 3, 7},
+            new int[]{130, 120, 110},
+            new int[]{48, 12, 4},
+            new int[]{90, 75, 50, 0},
+            distances, 0);
+    }
+
+    public static FareRules load(String path) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(path)) {
+            properties.load(in);
+        }
+        return parse(properties);
+    }
+
+    public static FareRules parse(Properties properties) {
+        String[] classes = strings(properties, "classes");
+        int[] bands = ints(properties, "bands");
+        int[][] rates = new int[classes.length][];
+        long[] minimum = new long[classes.length];
+        long[] reservation = new long[classes.length];
+        for (int c = 0; c < classes.length; c++) {
+            rates[c] = ints(properties, "rate." + classes[c]);
+            minimum[c] = Long.parseLong(properties.getProperty("minimum." + classes[c], "0").trim());
+            reservation[c] = Long.parseLong(properties.getProperty("reservation." + classes[c], "0").trim());
+        }
+        String[] quotas = properties.containsKey("quotas") ? strings(properties, "quotas") : new String[]{"GENERAL"};
+        int[] quotaPercent = new int[quotas.length];
+        for (int q = 0; q < quotas.length; q++) {
+            quotaPercent[q] = Integer.parseInt(properties.getProperty("quota." + quotas[q], "100").trim());
+        }
+        Map<Integer, Integer> distances = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("distance.") && !key.equals("distance.default")) {
+                distances.put(Integer.parseInt(key.substring("distance.".length())),
+                    Integer.parseInt(properties.getProperty(key).trim()));
+            }
+        }
+        return new FareRules(classes, bands, rates, minimum, reservation, quotas, quotaPercent,
+            ints(properties, "surge.days"), ints(properties, "surge.percent"),
+            ints(properties, "refund.hours"), ints(properties, "refund.percent"),
+            distances, Integer.parseInt(properties.getProperty("distance.default", "0").trim()));
+    }
+
+    private static String[] strings(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Fare rules are missing " + key);
+        }
+        String[] parts = value.split(",");
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = parts[i].trim();
+        }
+        return parts;
+    }
+
+    // A missing key is an empty list, e.g. no surge at all
+    private static int[] ints(Properties properties, String key) {
+        String value = properties.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
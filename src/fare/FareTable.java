@@ -0,0 +1,119 @@
+package fare;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// FareRules compiled for quoting. Everything a quote reads is a primitive array indexed by
+// class and distance band, with the fare up to the start of each band summed ahead of time,
+// so a quote is a band scan, a multiply-add and two percentages, and allocates nothing.
+// Immutable; a rules change compiles a new table.
+class FareTable {
+    final long version;
+    private final int bands;
+    private final int[] bandStartKm;
+    // [class * bands + band]: fare for the km before the band starts, and the rate within it
+    private final long[] bandBasePaise;
+    private final int[] bandRate;
+    private final long[] minimumPaise;
+    private final long[] reservationPaise;
+    private final int[] quotaPercent;
+    private final int[] surgeDays;
+    private final int[] surgePercent;
+    private final int[] refundHours;
+    private final int[] refundPercent;
+    private final Map<String, Integer> classIndexes = new HashMap<>();
+    private final Map<String, Integer> quotaIndexes = new HashMap<>();
+    private final Map<Integer, Integer> distanceKm;
+    private final int defaultDistanceKm;
+
+    FareTable(FareRules rules, long version) {
+        this.version = version;
+        int classes = rules.classes.length;
+        this.bands = rules.bandUpperKm.length + 1;
+        this.bandStartKm = new int[bands];
+        for (int b = 1; b < bands; b++) {
+            bandStartKm[b] = rules.bandUpperKm[b - 1];
+        }
+        this.bandBasePaise = new long[classes * bands];
+        this.bandRate = new int[classes * bands];
+        for (int c = 0; c < classes; c++) {
+            long base = 0;
+            for (int b = 0; b < bands; b++) {
+                bandBasePaise[c * bands + b] = base;
+                bandRate[c * bands + b] = rules.ratePaisePerKm[c][b];
+                if (b + 1 < bands) {
+                    base += (long) (bandStartKm[b + 1] - bandStartKm[b]) * rules.ratePaisePerKm[c][b];
+                }
+            }
+            classIndexes.put(rules.classes[c], c);
+        }
+        this.minimumPaise = rules.minimumPaise.clone();
+        this.reservationPaise = rules.reservationPaise.clone();
+        this.quotaPercent = rules.quotaPercent.clone();
+        for (int q = 0; q < rules.quotas.length; q++) {
+            quotaIndexes.put(rules.quotas[q], q);
+        }
+        this.surgeDays = rules.surgeDays.clone();
+        this.surgePercent = rules.surgePercent.clone();
+        this.refundHours = rules.refundHours.clone();
+        this.refundPercent = rules.refundPercent.clone();
+        this.distanceKm = new HashMap<>(rules.distanceKm);
+        this.defaultDistanceKm = rules.defaultDistanceKm;
+    }
+
+    int classCount() {
+        return minimumPaise.length;
+    }
+
+    int quotaCount() {
+        return quotaPercent.length;
+    }
+
+    // -1 for a class the rules have no rates for
+    int classIndex(String travelClass) {
+        Integer index = travelClass == null ? null : classIndexes.get(travelClass);
+        return index == null ? -1 : index;
+    }
+
+    // -1 for a quota the rules do not know
+    int quotaIndex(String quota) {
+        Integer index = quotaIndexes.get(quota);
+        return index == null ? -1 : index;
+    }
+
+    int distanceKm(int trainNumber) {
+        Integer km = distanceKm.get(trainNumber);
+        return km == null ? defaultDistanceKm : km;
+    }
+
+    // Per seat, rounded up to a whole rupee. daysBefore is Integer.MAX_VALUE for an undated journey.
+    long farePaise(int classIndex, int distanceKm, int quotaIndex, int daysBefore) {
+        int band = 0;
+        while (band + 1 < bands && distanceKm > bandStartKm[band + 1]) {
+            band++;
+        }
+        int i = classIndex * bands + band;
+        long base = Math.max(bandBasePaise[i] + (long) (distanceKm - bandStartKm[band]) * bandRate[i],
+            minimumPaise[classIndex]);
+        long fare = base * quotaPercent[quotaIndex] * surgePercent(daysBefore) / 10_000 + reservationPaise[classIndex];
+        return (fare + 99) / 100 * 100;
+    }
+
+    private int surgePercent(int daysBefore) {
+        for (int s = 0; s < surgeDays.length; s++) {
+            if (daysBefore <= surgeDays[s]) {
+                return surgePercent[s];
+            }
+        }
+        return 100;
+    }
+
+    // Rounded down to whole paise. hoursBefore is Integer.MAX_VALUE for an undated journey.
+    long refundPaise(long paidPaise, long hoursBefore) {
+        int slab = 0;
+        while (slab < refundHours.length && hoursBefore < refundHours[slab]) {
+            slab++;
+        }
+        return paidPaise * refundPercent[slab] / 100;
+    }
+}
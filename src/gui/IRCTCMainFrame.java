@@ -7,28 +7,47 @@ import javax.swing.plaf.FontUIResource;
 import java.awt.*;
 import javax.swing.event.ListSelectionListener;
 import java.awt.event.*;
+import common.BookingPage;
+import common.BookingRequest;
+import common.BookingStatus;
+import common.IBookingListener;
 import common.IIRCTCService;
+import common.OverloadException;
+import common.ServiceLocator;
 import booking.IBookingService;
 import reservation.IReservationService;
 import cancellation.ICancellationService;
-import java.rmi.registry.Registry;
+import client.AvailabilityCache;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.UUID;
 
 public class IRCTCMainFrame extends JFrame {
     private IBookingService bookingService;
     private IReservationService reservationService;
     private ICancellationService cancellationService;
+    private AvailabilityCache availabilityCache;
     private JLabel availableSeatsLabel;
     private JTextField numTicketsField;
     private List<IIRCTCService.BookingDetails> bookingHistory;
     private JPanel cardPanel;
     private CardLayout cardLayout;
     private JTable bookingHistoryTable;
+    private JButton loadMoreButton;
+    private JButton bookButton;
+    private JButton stopWaitingButton;
+    private JButton refreshSeatsButton;
+    private JButton cancelButton;
+    private long nextHistoryCursor;
+    // Every remote call goes through here so the EDT never blocks on the server
+    private final RemoteCalls remoteCalls = new RemoteCalls();
+    private RemoteCalls.Handle bookingCall;
+    private RemoteCalls.Handle historyCall;
+    private RemoteCalls.Handle seatsCall;
+    private static final int HISTORY_PAGE_SIZE = 50;
+    private final String userId = System.getProperty("user.name");
     private static final Color PRIMARY_COLOR = new Color(25, 118, 210); // Material Blue
     private static final Color SECONDARY_COLOR = new Color(245, 245, 245); // Light Gray
     private static final Font TITLE_FONT = new Font("Segoe UI", Font.BOLD, 28);
@@ -45,8 +64,8 @@ public class IRCTCMainFrame extends JFrame {
         super("IRCTC Railway Reservation System");
         bookingHistory = new ArrayList<>();
         setUIFont(new FontUIResource("Segoe UI", Font.PLAIN, 14));
-        initializeServices();
         setupGUI();
+        initializeServices();
     }
 
     private void setUIFont(FontUIResource font) {
@@ -60,40 +79,116 @@ public class IRCTCMainFrame extends JFrame {
         }
     }
 
-    private void initializeServices() {
-        int maxRetries = 5;
-        int retryDelay = 1000; // 1 second
+    // Services found in the registry, handed from the connecting thread to the EDT in one piece
+    private static class Connection {
+        IBookingService bookingService;
+        IReservationService reservationService;
+        ICancellationService cancellationService;
+        AvailabilityCache availabilityCache;
+    }
 
-        for (int i = 0; i < maxRetries; i++) {
-            try {
-                Registry registry = LocateRegistry.getRegistry("localhost", 1099);
-                bookingService = (IBookingService) registry.lookup("BookingService");
-                reservationService = (IReservationService) registry.lookup("ReservationService");
-                cancellationService = (ICancellationService) registry.lookup("CancellationService");
-                
-                // Test the connection
-                int seats = reservationService.getAvailableSeats();
-                System.out.println("Successfully connected to services. Available seats: " + seats);
-                return;
-                
-            } catch (Exception e) {
-                System.err.println("Attempt " + (i + 1) + " to connect to services failed: " + e.getMessage());
-                if (i < maxRetries - 1) {
+    // Told by the server when one of our bookings changes without us asking, e.g. when a
+    // waitlisted booking is confirmed. Called on an RMI thread.
+    private class BookingUpdates implements IBookingListener {
+        @Override
+        public void bookingChanged(IIRCTCService.BookingDetails booking) {
+            SwingUtilities.invokeLater(() -> showBookingUpdate(booking));
+        }
+    }
+
+    // Looks the services up in the background; the window is usable but the buttons that need
+    // the server stay disabled until this succeeds. The locator's stubs reconnect by themselves
+    // if the server restarts later on.
+    private void initializeServices() {
+        ServiceLocator locator = ServiceLocator.shared();
+
+        remoteCalls.submit("Connecting", locator.maxWaitMillis() + 4 * RemoteCalls.DEFAULT_TIMEOUT_MILLIS, () -> {
+            Connection connection = new Connection();
+            connection.bookingService = locator.lookup("BookingService", IBookingService.class);
+            connection.reservationService = locator.lookup("ReservationService", IReservationService.class);
+            connection.cancellationService = locator.lookup("CancellationService", ICancellationService.class);
+
+            // Test the connection
+            int seats = connection.reservationService.getAvailableSeats();
+            System.out.println("Successfully connected to services. Available seats: " + seats);
+            connection.availabilityCache = subscribeToAvailability(connection.reservationService);
+            BookingUpdates updates = subscribeToBookingUpdates(connection.bookingService, null);
+            locator.onReconnect("BookingService", () -> subscribeToBookingUpdates(connection.bookingService, updates));
+            if (connection.availabilityCache != null) {
+                locator.onReconnect("ReservationService", () -> {
                     try {
-                        Thread.sleep(retryDelay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
+                        connection.availabilityCache.reconnected();
+                    } catch (RemoteException e) {
+                        System.err.println("Could not subscribe to availability updates again: " + e.getMessage());
                     }
-                } else {
-                    JOptionPane.showMessageDialog(this,
-                        "Failed to connect to services after " + maxRetries + " attempts.\n" +
-                        "Please make sure the server is running.",
-                        "Connection Error",
-                        JOptionPane.ERROR_MESSAGE);
-                    System.exit(1);
-                }
+                });
+            }
+            return connection;
+        }, connection -> {
+            bookingService = connection.bookingService;
+            reservationService = connection.reservationService;
+            cancellationService = connection.cancellationService;
+            availabilityCache = connection.availabilityCache;
+            if (availabilityCache != null) {
+                availabilityCache.addChangeListener(() -> SwingUtilities.invokeLater(this::updateAvailableSeats));
+            }
+            for (JButton button : new JButton[]{bookButton, refreshSeatsButton, cancelButton}) {
+                button.setEnabled(true);
+            }
+            updateAvailableSeats();
+        }, e -> {
+            System.err.println("Failed to connect to services: " + e.getMessage());
+            JOptionPane.showMessageDialog(this,
+                "Failed to connect to services.\n" +
+                "Please make sure the server is running.",
+                "Connection Error",
+                JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        });
+    }
+
+    // Seat counts are pushed to us from here on; without the subscription every refresh
+    // falls back to asking the server. Runs on the connecting thread.
+    private static AvailabilityCache subscribeToAvailability(IReservationService reservationService) {
+        AvailabilityCache cache = new AvailabilityCache(reservationService);
+        try {
+            cache.start();
+            return cache;
+        } catch (RemoteException e) {
+            cache.stop();
+            System.err.println("Could not subscribe to availability updates: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Without this a waitlisted booking only shows up as confirmed when the history is reloaded.
+    // Pass the listener from an earlier call to subscribe it again after the server restarted.
+    private BookingUpdates subscribeToBookingUpdates(IBookingService service, BookingUpdates updates) {
+        try {
+            if (updates == null) {
+                updates = new BookingUpdates();
+                UnicastRemoteObject.exportObject(updates, 0);
             }
+            service.subscribe(userId, updates);
+        } catch (RemoteException e) {
+            System.err.println("Could not subscribe to booking updates: " + e.getMessage());
+        }
+        return updates;
+    }
+
+    private void showBookingUpdate(IIRCTCService.BookingDetails booking) {
+        if (booking.status == BookingStatus.CONFIRMED) {
+            JOptionPane.showMessageDialog(this,
+                "Your waitlisted booking " + booking.bookingId + " is now confirmed!\n" +
+                "Amount: ₹" + String.format("%.2f", booking.amountInRupees()),
+                "Waitlist", JOptionPane.INFORMATION_MESSAGE);
+        } else if (booking.status == BookingStatus.FAILED) {
+            JOptionPane.showMessageDialog(this,
+                "Seats came up for waitlisted booking " + booking.bookingId + " but the payment did not go through.",
+                "Waitlist", JOptionPane.WARNING_MESSAGE);
         }
+        updateAvailableSeats();
+        updateBookingHistoryPanel();
     }
 
     private void setupGUI() {
@@ -160,14 +255,15 @@ public class IRCTCMainFrame extends JFrame {
         titleLabel.setFont(TITLE_FONT);
         titleLabel.setForeground(PRIMARY_COLOR);
         
-        availableSeatsLabel = new JLabel("Fetching available seats...", SwingConstants.CENTER);
+        availableSeatsLabel = new JLabel("Connecting to server...", SwingConstants.CENTER);
         availableSeatsLabel.setFont(HEADER_FONT);
         availableSeatsLabel.setForeground(PRIMARY_COLOR);
 
         // Create a refresh button for seats
-        JButton refreshSeatsButton = createStyledButton("↻");
+        refreshSeatsButton = createStyledButton("↻");
         refreshSeatsButton.setToolTipText("Refresh Available Seats");
-        refreshSeatsButton.addActionListener(e -> updateAvailableSeats());
+        refreshSeatsButton.setEnabled(false);
+        refreshSeatsButton.addActionListener(e -> refreshAvailableSeats());
 
         JPanel seatsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         seatsPanel.setOpaque(false);
@@ -188,23 +284,31 @@ public class IRCTCMainFrame extends JFrame {
         numTicketsField = new JTextField(10);
         numTicketsField.setFont(NORMAL_FONT);
         
-        JButton bookButton = createStyledButton("Book Tickets");
+        bookButton = createStyledButton("Book Tickets");
+        bookButton.setEnabled(false);
         bookButton.addActionListener(e -> bookTickets());
 
+        // Only enabled while a booking is waiting on the server
+        stopWaitingButton = createStyledButton("Stop Waiting");
+        stopWaitingButton.setEnabled(false);
+        stopWaitingButton.addActionListener(e -> stopWaitingForBooking());
+
+        JPanel bookingButtons = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 0));
+        bookingButtons.setOpaque(false);
+        bookingButtons.add(bookButton);
+        bookingButtons.add(stopWaitingButton);
+
         gbc.gridx = 0; gbc.gridy = 0;
         formPanel.add(ticketsLabel, gbc);
         gbc.gridx = 1;
         formPanel.add(numTicketsField, gbc);
         gbc.gridx = 0; gbc.gridy = 1;
         gbc.gridwidth = 2;
-        formPanel.add(bookButton, gbc);
+        formPanel.add(bookingButtons, gbc);
 
         mainPanel.add(headerPanel, BorderLayout.NORTH);
         mainPanel.add(formPanel, BorderLayout.CENTER);
 
-        // Update seats initially
-        updateAvailableSeats();
-
         return mainPanel;
     }
 
@@ -239,14 +343,20 @@ public class IRCTCMainFrame extends JFrame {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 10));
         buttonPanel.setOpaque(false);
 
-        JButton cancelButton = createStyledButton("Cancel Selected Booking");
+        cancelButton = createStyledButton("Cancel Selected Booking");
+        cancelButton.setEnabled(false);
         cancelButton.addActionListener(e -> handleCancellation());
 
         JButton refreshButton = createStyledButton("Refresh");
         refreshButton.addActionListener(e -> updateBookingHistoryPanel());
 
+        loadMoreButton = createStyledButton("Load More");
+        loadMoreButton.setEnabled(false);
+        loadMoreButton.addActionListener(e -> loadHistoryPage(nextHistoryCursor));
+
         buttonPanel.add(cancelButton);
         buttonPanel.add(refreshButton);
+        buttonPanel.add(loadMoreButton);
         mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
         return mainPanel;
@@ -286,7 +396,14 @@ public class IRCTCMainFrame extends JFrame {
         if (selectedRow != -1) {
             IIRCTCService.BookingDetails booking = bookingHistory.get(selectedRow);
             // Allow cancellation for both CONFIRMED and PARTIALLY CANCELLED tickets
-            if (booking.status.equals("CONFIRMED") || booking.status.equals("PARTIALLY CANCELLED")) {
+            if (booking.status == BookingStatus.WAITLISTED) {
+                int choice = JOptionPane.showConfirmDialog(this,
+                    "Leave the waitlist for booking " + booking.bookingId + "?",
+                    "Cancel Waitlisted Booking", JOptionPane.YES_NO_OPTION);
+                if (choice == JOptionPane.YES_OPTION) {
+                    cancelBooking(booking, booking.numSeats);
+                }
+            } else if (booking.status.isCancellable()) {
                 String input = JOptionPane.showInputDialog(this,
                     "Enter number of tickets to cancel (1-" + booking.numSeats + "):",
                     "Cancel Tickets",
@@ -318,31 +435,46 @@ public class IRCTCMainFrame extends JFrame {
         JOptionPane.showMessageDialog(this, message, title, JOptionPane.WARNING_MESSAGE);
     }
 
+    // Reloads the history from the server, one page at a time, newest first
     private void updateBookingHistoryPanel() {
         DefaultTableModel model = (DefaultTableModel) bookingHistoryTable.getModel();
         model.setRowCount(0); // Clear existing rows
+        bookingHistory.clear();
+        loadHistoryPage(0);
+    }
 
-        for (IIRCTCService.BookingDetails booking : bookingHistory) {
-            String status = booking.status;
-            String ticketInfo = booking.numSeats + " / " + getOriginalTicketCount(booking);
-            String amount = "₹" + String.format("%.2f", booking.amount);
-
-            model.addRow(new Object[]{
-                booking.bookingId,
-                ticketInfo,
-                amount,
-                status
-            });
-            
-            System.out.println("Updating booking " + booking.bookingId + 
-                             ": Tickets=" + ticketInfo + 
-                             ", Status=" + status);
+    // A newer load replaces one still in flight, so rows from a stale page never land in the table
+    private void loadHistoryPage(long cursor) {
+        if (bookingService == null) {
+            return; // Still connecting
         }
-        
-        // Select first row if available
-        if (model.getRowCount() > 0) {
-            bookingHistoryTable.setRowSelectionInterval(0, 0);
+        if (historyCall != null) {
+            historyCall.cancel();
         }
+        loadMoreButton.setEnabled(false);
+        IBookingService service = bookingService;
+        historyCall = remoteCalls.submit("Loading booking history",
+            () -> service.getBookings(userId, null, cursor, HISTORY_PAGE_SIZE),
+            page -> {
+                DefaultTableModel model = (DefaultTableModel) bookingHistoryTable.getModel();
+                for (IIRCTCService.BookingDetails booking : page.bookings) {
+                    bookingHistory.add(booking);
+                    model.addRow(new Object[]{
+                        booking.bookingId,
+                        booking.numSeats + " / " + booking.totalSeats,
+                        "₹" + String.format("%.2f", booking.amountInRupees()),
+                        booking.status
+                    });
+                }
+                nextHistoryCursor = page.nextCursor;
+                loadMoreButton.setEnabled(page.hasMore());
+
+                // Select first row if available
+                if (cursor == 0 && model.getRowCount() > 0) {
+                    bookingHistoryTable.setRowSelectionInterval(0, 0);
+                }
+            },
+            e -> showError("Could not load booking history: " + e.getMessage(), "Error"));
     }
 
     private void showCard(String cardName) {
@@ -350,65 +482,117 @@ public class IRCTCMainFrame extends JFrame {
     }
 
     private void bookTickets() {
+        int numTickets;
         try {
-            int numTickets = Integer.parseInt(numTicketsField.getText());
+            numTickets = Integer.parseInt(numTicketsField.getText());
             if (numTickets <= 0) {
                 throw new NumberFormatException();
             }
-            
-            IIRCTCService.BookingDetails booking = bookingService.bookTicket(numTickets);
-            originalTicketCounts.put(booking.bookingId, numTickets); // Store original count
-            bookingHistory.add(booking);
-            
-            if (booking.status.equals("CONFIRMED")) {
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, 
+                "Please enter a valid number of tickets", 
+                "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        // Sold out as far as the pushed counts know: offer the waitlist instead
+        boolean waitlist = false;
+        int available = availabilityCache == null ? -1 : availabilityCache.getAvailableSeats(
+            IReservationService.DEFAULT_TRAIN, null, IReservationService.DEFAULT_CLASS);
+        if (available >= 0 && available < numTickets) {
+            int choice = JOptionPane.showConfirmDialog(this,
+                "Only " + available + " seats are available.\nJoin the waitlist for " + numTickets + " seats?",
+                "Not Enough Seats", JOptionPane.YES_NO_OPTION);
+            if (choice != JOptionPane.YES_OPTION) {
+                return;
+            }
+            waitlist = true;
+        }
+
+        IBookingService service = bookingService;
+        BookingRequest request = new BookingRequest(
+            IReservationService.DEFAULT_TRAIN, null, IReservationService.DEFAULT_CLASS, numTickets, userId, waitlist);
+        stopWaitingButton.setEnabled(true);
+        bookingCall = remoteCalls.submit("Booking", () -> service.bookTicket(request), booking -> {
+            stopWaitingButton.setEnabled(false);
+            if (booking.status == BookingStatus.WAITLISTED) {
+                showWaitlisted(booking);
+                numTicketsField.setText("");
+            } else if (booking.status == BookingStatus.CONFIRMED) {
                 JOptionPane.showMessageDialog(this, 
                     "Booking Successful!\nBooking ID: " + booking.bookingId +
-                    "\nAmount: ₹" + booking.amount);
-                availableSeatsLabel.setText("Available Seats: " + 
-                    reservationService.getAvailableSeats());
+                    "\nAmount: ₹" + String.format("%.2f", booking.amountInRupees()));
+                updateAvailableSeats();
                 numTicketsField.setText("");
             } else {
                 JOptionPane.showMessageDialog(this, 
                     "Booking failed", "Error", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (NumberFormatException e) {
-            JOptionPane.showMessageDialog(this, 
-                "Please enter a valid number of tickets", 
-                "Error", JOptionPane.ERROR_MESSAGE);
-        } catch (Exception e) {
+        }, e -> {
+            stopWaitingButton.setEnabled(false);
+            OverloadException overload = OverloadException.in(e);
+            if (overload != null) {
+                // Nothing was booked, so trying again later is safe
+                long seconds = Math.max(1, (overload.retryAfterMillis + 999) / 1000);
+                JOptionPane.showMessageDialog(this,
+                    "The booking service is busy right now.\nPlease try again in " + seconds + "s.",
+                    "Busy", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
             JOptionPane.showMessageDialog(this, 
                 "Booking failed: " + e.getMessage(), 
                 "Error", JOptionPane.ERROR_MESSAGE);
+        }, bookButton);
+    }
+
+    private void showWaitlisted(IIRCTCService.BookingDetails booking) {
+        IBookingService service = bookingService;
+        remoteCalls.submit("Waitlist position", () -> service.getWaitlistPosition(booking.bookingId), position -> {
+            JOptionPane.showMessageDialog(this,
+                "Added to the waitlist.\nBooking ID: " + booking.bookingId +
+                (position > 0 ? "\nPosition: WL " + position : "") +
+                "\nYou will be told here as soon as seats are confirmed.",
+                "Waitlist", JOptionPane.INFORMATION_MESSAGE);
+        }, e -> System.err.println("Could not fetch waitlist position: " + e.getMessage()));
+        updateBookingHistoryPanel();
+    }
+
+    // The request has already reached the server, so the booking may still go through
+    private void stopWaitingForBooking() {
+        if (bookingCall != null && !bookingCall.isDone()) {
+            bookingCall.cancel();
+            stopWaitingButton.setEnabled(false);
+            JOptionPane.showMessageDialog(this,
+                "Stopped waiting for the booking. It may still complete on the server;\n" +
+                "check Booking History before trying again.",
+                "Booking", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
     private void cancelBooking(IIRCTCService.BookingDetails booking, int numTicketsToCancel) {
-        try {
-            debugBooking(booking, "Before cancellation"); // Add debug information
-            System.out.println("Attempting to cancel " + numTicketsToCancel + " tickets from booking: " + booking.bookingId);
-            
-            boolean cancelled = cancellationService.cancelBooking(booking, numTicketsToCancel);
-            if (cancelled) {
-                // Calculate refund amount before updating the booking
-                double refundAmount = (booking.amount / booking.numSeats) * numTicketsToCancel;
-                
-                // Update the booking details
-                booking.numSeats -= numTicketsToCancel;
-                booking.amount -= refundAmount;
-                
-                // Update status
-                if (booking.numSeats == 0) {
-                    booking.status = "CANCELLED";
-                } else {
-                    booking.status = "PARTIALLY CANCELLED";
-                }
+        debugBooking(booking, "Before cancellation"); // Add debug information
+        System.out.println("Attempting to cancel " + numTicketsToCancel + " tickets from booking: " + booking.bookingId);
 
-                debugBooking(booking, "After cancellation"); // Add debug information
+        ICancellationService service = cancellationService;
+        // The same key on a retry makes the server answer with the first outcome
+        String idempotencyKey = UUID.randomUUID().toString();
+        remoteCalls.submit("Cancellation", () -> {
+            try {
+                return service.cancelBooking(booking.bookingId, numTicketsToCancel, idempotencyKey);
+            } catch (RemoteException e) {
+                System.err.println("Cancellation call failed, retrying: " + e.getMessage());
+                return service.cancelBooking(booking.bookingId, numTicketsToCancel, idempotencyKey);
+            }
+        }, result -> {
+            if (result.isSuccess()) {
+                IIRCTCService.BookingDetails updated = result.booking;
+                double refundAmount = result.refundPaise / 100.0;
+                debugBooking(updated, "After cancellation"); // Add debug information
 
                 JOptionPane.showMessageDialog(this, 
                     "Cancellation successful!\n" +
                     "Number of tickets cancelled: " + numTicketsToCancel + "\n" +
-                    "Remaining tickets: " + booking.numSeats + "\n" +
+                    "Remaining tickets: " + updated.numSeats + "\n" +
                     "Refund amount: ₹" + String.format("%.2f", refundAmount));
                     
                 // Update UI
@@ -416,42 +600,62 @@ public class IRCTCMainFrame extends JFrame {
                 updateBookingHistoryPanel();
             } else {
                 JOptionPane.showMessageDialog(this, 
-                    "Cancellation failed", "Error", JOptionPane.ERROR_MESSAGE);
+                    "Cancellation failed: " + result.error, "Error", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (Exception e) {
+        }, e -> {
             e.printStackTrace();
             JOptionPane.showMessageDialog(this, 
                 "Cancellation failed: " + e.getMessage(), 
                 "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        }, cancelButton);
     }
 
-    // Add this method to track original ticket count
-    private Map<Integer, Integer> originalTicketCounts = new HashMap<>();
-
-    private int getOriginalTicketCount(IIRCTCService.BookingDetails booking) {
-        return originalTicketCounts.getOrDefault(booking.bookingId, booking.numSeats);
+    private void refreshAvailableSeats() {
+        if (availabilityCache == null) {
+            updateAvailableSeats();
+            return;
+        }
+        AvailabilityCache cache = availabilityCache;
+        remoteCalls.submit("Refreshing seats", () -> {
+            cache.resync();
+            return null;
+        }, ignored -> updateAvailableSeats(), e -> {
+            System.err.println("Error resyncing seats: " + e.getMessage());
+            updateAvailableSeats();
+        }, refreshSeatsButton);
     }
 
     private void updateAvailableSeats() {
-        try {
-            int seats = reservationService.getAvailableSeats();
-            availableSeatsLabel.setText("Available Seats: " + seats);
-            availableSeatsLabel.setForeground(PRIMARY_COLOR);
-        } catch (Exception e) {
+        if (availableSeatsLabel == null) {
+            return; // A push arrived before the panel was built
+        }
+        if (availabilityCache != null) {
+            showAvailableSeats(availabilityCache.getAvailableSeats(
+                IReservationService.DEFAULT_TRAIN, null, IReservationService.DEFAULT_CLASS));
+            return;
+        }
+        if (reservationService == null || (seatsCall != null && !seatsCall.isDone())) {
+            return; // Not connected yet, or a fetch is already on its way
+        }
+        IReservationService service = reservationService;
+        seatsCall = remoteCalls.submit("Fetching seats", service::getAvailableSeats, this::showAvailableSeats, e -> {
             availableSeatsLabel.setText("Error fetching seats");
             availableSeatsLabel.setForeground(Color.RED);
             System.err.println("Error fetching seats: " + e.getMessage());
-            e.printStackTrace();
-        }
+        });
+    }
+
+    private void showAvailableSeats(int seats) {
+        availableSeatsLabel.setText("Available Seats: " + seats);
+        availableSeatsLabel.setForeground(PRIMARY_COLOR);
     }
 
     private void debugBooking(IIRCTCService.BookingDetails booking, String operation) {
         System.out.println(operation + " - Booking ID: " + booking.bookingId);
         System.out.println("Current tickets: " + booking.numSeats);
-        System.out.println("Original tickets: " + getOriginalTicketCount(booking));
+        System.out.println("Original tickets: " + booking.totalSeats);
         System.out.println("Status: " + booking.status);
-        System.out.println("Amount: " + booking.amount);
+        System.out.println("Amount: " + String.format("%.2f", booking.amountInRupees()));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,109 @@
+package gui;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs remote calls on background threads so the Event Dispatch Thread never waits on the
+// network. Callbacks are always delivered on the EDT. A call ends exactly once: with its result,
+// with a timeout, or by being cancelled, and whichever comes first wins. Components passed to
+// submit are disabled while the call is outstanding, so a second click cannot start a
+// duplicate request.
+final class RemoteCalls {
+    static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("irctc.client.timeoutMillis", 10_000);
+
+    interface Call<T> {
+        T run() throws Exception;
+    }
+
+    final class Handle {
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final JComponent[] busy;
+        private volatile Future<?> task;
+        private volatile ScheduledFuture<?> timeout;
+
+        private Handle(JComponent[] busy) {
+            this.busy = busy;
+        }
+
+        boolean isDone() {
+            return finished.get();
+        }
+
+        // Stops waiting for the call. The server may still complete it; only its result is dropped.
+        void cancel() {
+            finish(null, true);
+        }
+
+        // Claims the call's outcome and runs the callback on the EDT; false if it was already claimed
+        private boolean finish(Runnable callback, boolean interruptCall) {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (interruptCall && task != null) {
+                task.cancel(true);
+            }
+            SwingUtilities.invokeLater(() -> {
+                for (JComponent component : busy) {
+                    component.setEnabled(true);
+                }
+                if (callback != null) {
+                    callback.run();
+                }
+            });
+            return true;
+        }
+    }
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(daemonThreads("remote-call"));
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("remote-call-timer"));
+
+    // Must be called on the EDT
+    <T> Handle submit(String description, long timeoutMillis, Call<T> call, Consumer<T> onSuccess,
+                      Consumer<Exception> onFailure, JComponent... disableWhileRunning) {
+        for (JComponent component : disableWhileRunning) {
+            component.setEnabled(false);
+        }
+        Handle handle = new Handle(disableWhileRunning);
+        handle.task = executor.submit(() -> {
+            try {
+                T result = call.run();
+                handle.finish(() -> onSuccess.accept(result), false);
+            } catch (Exception e) {
+                handle.finish(() -> onFailure.accept(e), false);
+            }
+        });
+        handle.timeout = timer.schedule(() -> {
+            handle.finish(() -> onFailure.accept(new TimeoutException(
+                description + " timed out after " + timeoutMillis / 1000.0 + "s")), true);
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        return handle;
+    }
+
+    <T> Handle submit(String description, Call<T> call, Consumer<T> onSuccess, Consumer<Exception> onFailure,
+                      JComponent... disableWhileRunning) {
+        return submit(description, DEFAULT_TIMEOUT_MILLIS, call, onSuccess, onFailure, disableWhileRunning);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,459 @@
+package ledger;
+
+import common.BookingStatus;
+import common.IIRCTCService;
+import common.Log;
+import common.SeatAllocation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Append-only log of every booking state transition, kept in memory-mapped segment files.
+//
+// Every record is RECORD_BYTES wide so a record's position is its sequence number times the
+// record width. Appends only copy into the mapping; a background flusher forces the mapping
+// to disk and wakes every writer whose record made it, so one fsync covers a whole batch.
+//
+// Events: CREATED (a booking was accepted, with its first status), STATUS (any later status
+// change), BOOKED (confirmed with seats) and CANCELLED (seats given back, with their share of
+// the amount paid). A user id or seat list too big for one record goes in USER and SEATS
+// records written just before the event they belong to, and so does the LEGS record of a
+// booking for part of a route; an event and its continuation
+// records are appended under one lock, so a flush never splits them. LedgerState folds the
+// events into the projections the services start from.
+//
+// Every checkpointEvery records a background thread writes a snapshot of the projections:
+// it loads the previous snapshot, folds in the records since, writes the result and deletes
+// segments the snapshot covers. Recovery loads the snapshot and replays only the tail, so
+// restart time depends on the number of bookings, not on the length of the history.
+public class BookingLedger {
+    static final byte BOOKED = 1;
+    static final byte CANCELLED = 2;
+    static final byte CREATED = 3;
+    static final byte STATUS = 4;
+    static final byte SEATS = 5;
+    static final byte USER = 6;
+    static final byte LEGS = 7;
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    // Record layout: type at 0, status or chunk length at 1, seat total at 2, seat count or
+    // chunk index at 4, booking id at 8, amount at 16, timestamp at 24, train at 32, journey
+    // day at 36, class at 40, CRC at 44. Continuation records carry their payload in 16..43.
+    private static final int RECORD_BYTES = 64;
+    private static final int CRC_OFFSET = 44;
+    static final int PAYLOAD_OFFSET = 16;
+    private static final int PAYLOAD_BYTES = CRC_OFFSET - PAYLOAD_OFFSET;
+    static final int SEATS_PER_RECORD = PAYLOAD_BYTES / 4;
+    private static final int RECORDS_PER_SEGMENT = 1 << 20; // 64 MB segments
+    private static final long FLUSH_INTERVAL_MILLIS = Long.getLong("irctc.ledger.flushMillis", 2);
+    private static final int CHECKPOINT_MAGIC = 0x4C434B50; // Counts only, before bookings were projected
+    private static final int SNAPSHOT_MAGIC = 0x4C534E32;
+
+    private final File directory;
+    private final long checkpointEvery;
+    private final LedgerState state = new LedgerState();
+    private final CRC32C crc = new CRC32C();
+    private final byte[] scratch = new byte[RECORD_BYTES];
+    private MappedByteBuffer segment;
+    private MappedByteBuffer previousSegment;
+    private long nextSequence;
+    private volatile long lastCheckpoint;
+
+    // A j.u.c lock rather than a monitor so writers waiting on a flush park cleanly on virtual threads
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition appended = durableLock.newCondition();
+    private final Condition flushed = durableLock.newCondition();
+    private long durableSequence;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ledger-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BookingLedger(File directory) throws IOException {
+        this(directory, Long.getLong("irctc.ledger.checkpointEvery", 100_000));
+    }
+
+    public BookingLedger(File directory, long checkpointEvery) throws IOException {
+        this.directory = directory;
+        this.checkpointEvery = checkpointEvery;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create ledger directory " + directory);
+        }
+        recover();
+        this.flusher = new Thread(this::flushLoop, "ledger-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Projections as of the last record recovered at startup. Not updated afterwards.
+    public LedgerState recoveredState() {
+        return state;
+    }
+
+    // A new booking with its first status, PENDING or WAITLISTED
+    public long created(IIRCTCService.BookingDetails booking) throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (booking.userId != null) {
+                byte[] user = booking.userId.getBytes(StandardCharsets.UTF_8);
+                for (int from = 0; from < user.length; from += PAYLOAD_BYTES) {
+                    int length = Math.min(PAYLOAD_BYTES, user.length - from);
+                    int offset = nextRecord();
+                    segment.put(offset, USER);
+                    segment.put(offset + 1, (byte) length);
+                    segment.putInt(offset + 4, from);
+                    segment.putLong(offset + 8, booking.bookingId);
+                    segment.put(offset + PAYLOAD_OFFSET, user, from, length);
+                    seal(offset);
+                }
+            }
+            if (booking.legs != SeatAllocation.ALL_LEGS) {
+                int offset = nextRecord();
+                segment.put(offset, LEGS);
+                segment.putLong(offset + 8, booking.bookingId);
+                segment.putLong(offset + PAYLOAD_OFFSET, booking.legs);
+                seal(offset);
+            }
+            sequence = putEvent(CREATED, booking.status, booking.bookingId, booking.numSeats, booking.amountPaise,
+                booking.trainNumber, booking.journeyDate, booking.travelClass);
+        }
+        signalAppended();
+        return sequence;
+    }
+
+    public long statusChanged(long bookingId, BookingStatus status) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = putEvent(STATUS, status, bookingId, 0, 0, 0, null, null);
+        }
+        signalAppended();
+        return sequence;
+    }
+
+    // Confirmed, with the seats it was given
+    public long booked(IIRCTCService.BookingDetails booking) throws IOException {
+        long sequence;
+        synchronized (this) {
+            SeatAllocation seats = booking.seats;
+            if (seats != null) {
+                for (int first = 0; first < seats.size(); first += SEATS_PER_RECORD) {
+                    int count = Math.min(SEATS_PER_RECORD, seats.size() - first);
+                    int offset = nextRecord();
+                    segment.put(offset, SEATS);
+                    segment.put(offset + 1, (byte) count);
+                    segment.putShort(offset + 2, (short) seats.size());
+                    segment.putInt(offset + 4, first);
+                    segment.putLong(offset + 8, booking.bookingId);
+                    for (int i = 0; i < count; i++) {
+                        segment.putShort(offset + PAYLOAD_OFFSET + i * 4, (short) seats.coaches[first + i]);
+                        segment.putShort(offset + PAYLOAD_OFFSET + i * 4 + 2, (short) seats.seats[first + i]);
+                    }
+                    seal(offset);
+                }
+            }
+            sequence = putEvent(BOOKED, BookingStatus.CONFIRMED, booking.bookingId, booking.numSeats,
+                booking.amountPaise, booking.trainNumber, booking.journeyDate, booking.travelClass);
+        }
+        signalAppended();
+        return sequence;
+    }
+
+    // numSeats seats given back from the end of the booking's allocation, sharePaise of what
+    // was paid taken off the booking
+    public long cancelled(IIRCTCService.BookingDetails booking, int numSeats, long sharePaise) throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = putEvent(CANCELLED, null, booking.bookingId, numSeats, sharePaise,
+                booking.trainNumber, booking.journeyDate, booking.travelClass);
+        }
+        signalAppended();
+        return sequence;
+    }
+
+    // Caller holds the monitor
+    private long putEvent(byte type, BookingStatus status, long bookingId, int numSeats, long amountPaise,
+                          int trainNumber, LocalDate journeyDate, String travelClass) throws IOException {
+        int offset = nextRecord();
+        segment.put(offset, type);
+        segment.put(offset + 1, status == null ? 0 : (byte) status.ordinal());
+        segment.putInt(offset + 4, numSeats);
+        segment.putLong(offset + 8, bookingId);
+        segment.putLong(offset + 16, amountPaise);
+        segment.putLong(offset + 24, System.currentTimeMillis());
+        segment.putInt(offset + 32, trainNumber);
+        segment.putInt(offset + 36, journeyDate == null ? NO_DATE : (int) journeyDate.toEpochDay());
+        segment.putInt(offset + 40, encodeClass(travelClass));
+        seal(offset);
+        return nextSequence - 1;
+    }
+
+    // Claims the next record slot and returns its offset in the current segment
+    private int nextRecord() throws IOException {
+        long sequence = nextSequence++;
+        int slot = (int) (sequence % RECORDS_PER_SEGMENT);
+        if (slot == 0 && sequence > 0) {
+            rollSegment(sequence / RECORDS_PER_SEGMENT);
+        }
+        return slot * RECORD_BYTES;
+    }
+
+    private void seal(int offset) {
+        segment.putInt(offset + CRC_OFFSET, checksum(segment, offset, crc, scratch));
+    }
+
+    private void signalAppended() {
+        durableLock.lock();
+        try {
+            appended.signal();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    // Blocks until the record with this sequence number has been forced to disk
+    public void awaitDurable(long sequence) throws IOException {
+        durableLock.lock();
+        try {
+            while (durableSequence <= sequence) {
+                if (!running) {
+                    throw new IOException("Ledger is closed");
+                }
+                flushed.await(FLUSH_INTERVAL_MILLIS * 10, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for ledger flush");
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            durableLock.lock();
+            try {
+                appended.await(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                durableLock.unlock();
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        long written;
+        MappedByteBuffer current;
+        MappedByteBuffer previous;
+        synchronized (this) {
+            written = nextSequence;
+            current = segment;
+            previous = previousSegment;
+            previousSegment = null;
+        }
+        if (written == durableSequence) {
+            return;
+        }
+        if (previous != null) {
+            previous.force();
+        }
+        current.force();
+        durableLock.lock();
+        try {
+            durableSequence = written;
+            flushed.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+        // written was read under the monitor, so it never falls inside an event's records
+        if (written - lastCheckpoint >= checkpointEvery && running && snapshotting.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    writeSnapshot(written);
+                } catch (IOException e) {
+                    Log.error("BookingLedger: Failed to write snapshot: " + e.getMessage());
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+    }
+
+    // Runs on the snapshot thread and only reads records that are already on disk, so appends
+    // never wait for it. It folds into a state of its own rather than touching the live one.
+    private void writeSnapshot(long position) throws IOException {
+        long start = System.currentTimeMillis();
+        LedgerState snapshot = new LedgerState();
+        long from = readSnapshot(snapshot);
+        replay(snapshot, from, position, new CRC32C(), new byte[RECORD_BYTES]);
+
+        File tmp = new File(directory, "checkpoint.tmp");
+        FileOutputStream file = new FileOutputStream(tmp);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(position);
+            snapshot.writeTo(out);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp.toPath(), new File(directory, "checkpoint").toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastCheckpoint = position;
+
+        // Segments wholly before the snapshot are never read again
+        for (long index = position / RECORDS_PER_SEGMENT - 1; index >= 0; index--) {
+            File covered = segmentFile(index);
+            if (!covered.exists() || !covered.delete()) {
+                break;
+            }
+        }
+        Log.info("BookingLedger: Snapshot of " + snapshot.bookings.size() + " bookings at " + position
+            + " written in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void recover() throws IOException {
+        long start = System.currentTimeMillis();
+        long position = readSnapshot(state);
+        lastCheckpoint = position;
+        long sequence = replay(state, position, Long.MAX_VALUE, crc, scratch);
+        nextSequence = sequence;
+        durableSequence = sequence;
+        segment = map(sequence / RECORDS_PER_SEGMENT, FileChannel.MapMode.READ_WRITE);
+        Log.info("BookingLedger: Recovered " + state.bookings.size() + " bookings, replaying "
+            + (sequence - position) + " records after snapshot at " + position + ", in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Folds records [from, until) into target, stopping early at the first empty or torn
+    // record, and returns the position reached
+    private long replay(LedgerState target, long from, long until, CRC32C crc, byte[] scratch) throws IOException {
+        long sequence = from;
+        while (sequence < until) {
+            long segmentIndex = sequence / RECORDS_PER_SEGMENT;
+            if (!segmentFile(segmentIndex).exists()) {
+                break;
+            }
+            MappedByteBuffer records = map(segmentIndex, FileChannel.MapMode.READ_ONLY);
+            int slot = (int) (sequence % RECORDS_PER_SEGMENT);
+            for (; slot < RECORDS_PER_SEGMENT && sequence < until; slot++, sequence++) {
+                int offset = slot * RECORD_BYTES;
+                if (records.get(offset) == 0 || records.getInt(offset + CRC_OFFSET) != checksum(records, offset, crc, scratch)) {
+                    return sequence;
+                }
+                target.apply(records, offset);
+            }
+        }
+        return sequence;
+    }
+
+    // Loads the last snapshot into target and returns the position it covers, 0 if none
+    private long readSnapshot(LedgerState target) throws IOException {
+        File file = new File(directory, "checkpoint");
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (header.readInt() == CHECKPOINT_MAGIC) {
+                long position = header.readLong();
+                target.readCounts(header);
+                return position;
+            }
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Corrupt ledger snapshot " + file);
+            }
+            long position = in.readLong();
+            target.readFrom(in);
+            return position;
+        }
+    }
+
+    private void rollSegment(long segmentIndex) throws IOException {
+        previousSegment = segment;
+        segment = map(segmentIndex, FileChannel.MapMode.READ_WRITE);
+    }
+
+    private MappedByteBuffer map(long segmentIndex, FileChannel.MapMode mode) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(segmentIndex),
+                mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+             FileChannel channel = file.getChannel()) {
+            return channel.map(mode, 0, (long) RECORDS_PER_SEGMENT * RECORD_BYTES);
+        }
+    }
+
+    private File segmentFile(long segmentIndex) {
+        return new File(directory, String.format("ledger-%08d.log", segmentIndex));
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, CRC32C crc, byte[] scratch) {
+        buffer.get(offset, scratch, 0, CRC_OFFSET);
+        crc.reset();
+        crc.update(scratch, 0, CRC_OFFSET);
+        return (int) crc.getValue();
+    }
+
+    static int encodeClass(String travelClass) {
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            code <<= 8;
+            if (travelClass != null && i < travelClass.length()) {
+                code |= travelClass.charAt(i) & 0xFF;
+            }
+        }
+        return code;
+    }
+
+    static String decodeClass(int code) {
+        StringBuilder sb = new StringBuilder(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int c = (code >>> shift) & 0xFF;
+            if (c != 0) {
+                sb.append((char) c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,241 @@
+package ledger;
+
+import common.BookingStatus;
+import common.IIRCTCService;
+import common.SeatAllocation;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Projections folded from the ledger's events: the highest booking id handed out, the number
+// of seats currently booked in every (train, date, class) pool, and every booking as of the
+// last event, in the order the bookings were first recorded.
+public class LedgerState {
+    public long maxBookingId;
+    public final Map<Pool, Integer> bookedSeats = new HashMap<>();
+    public final Map<Long, IIRCTCService.BookingDetails> bookings = new LinkedHashMap<>();
+
+    // Continuation records seen before the event they belong to
+    private final Map<Long, ByteArrayOutputStream> pendingUsers = new HashMap<>();
+    private final Map<Long, int[][]> pendingSeats = new HashMap<>();
+    private final Map<Long, Long> pendingLegs = new HashMap<>();
+    private final Map<Integer, String> classNames = new HashMap<>();
+
+    // The seats held by every booking that is still confirmed, to put back into inventory
+    public List<SeatAllocation> bookedAllocations() {
+        List<SeatAllocation> allocations = new ArrayList<>();
+        for (IIRCTCService.BookingDetails booking : bookings.values()) {
+            if (booking.status.isCancellable() && booking.seats != null && booking.seats.size() > 0) {
+                allocations.add(booking.seats);
+            }
+        }
+        return allocations;
+    }
+
+    // Booked seats per pool that no allocation accounts for: bookings from ledgers written
+    // before seat numbers were recorded, which can only be restored by count
+    public Map<Pool, Integer> unallocatedSeats() {
+        Map<Pool, Integer> remaining = new HashMap<>(bookedSeats);
+        for (SeatAllocation seats : bookedAllocations()) {
+            int epochDay = seats.journeyDate == null ? BookingLedger.NO_DATE : (int) seats.journeyDate.toEpochDay();
+            remaining.merge(new Pool(seats.trainNumber, epochDay, BookingLedger.encodeClass(seats.travelClass)),
+                -seats.size(), Integer::sum);
+        }
+        remaining.values().removeIf(count -> count <= 0);
+        return remaining;
+    }
+
+    // Applies the record at offset; the checksum has already been verified
+    void apply(ByteBuffer record, int offset) {
+        byte type = record.get(offset);
+        long bookingId = record.getLong(offset + 8);
+        maxBookingId = Math.max(maxBookingId, bookingId);
+        switch (type) {
+            case BookingLedger.USER:
+                readUserChunk(record, offset, bookingId);
+                break;
+            case BookingLedger.SEATS:
+                readSeatChunk(record, offset, bookingId);
+                break;
+            case BookingLedger.LEGS:
+                pendingLegs.put(bookingId, record.getLong(offset + BookingLedger.PAYLOAD_OFFSET));
+                break;
+            case BookingLedger.CREATED:
+                IIRCTCService.BookingDetails created = newBooking(record, offset, bookingId);
+                created.status = BookingStatus.fromCode(record.get(offset + 1));
+                ByteArrayOutputStream user = pendingUsers.remove(bookingId);
+                if (user != null) {
+                    created.userId = new String(user.toByteArray(), StandardCharsets.UTF_8);
+                }
+                Long legs = pendingLegs.remove(bookingId);
+                if (legs != null) {
+                    created.legs = legs;
+                }
+                bookings.put(bookingId, created);
+                break;
+            case BookingLedger.STATUS:
+                IIRCTCService.BookingDetails changed = bookings.get(bookingId);
+                if (changed != null) {
+                    changed.status = BookingStatus.fromCode(record.get(offset + 1));
+                    if (changed.status == BookingStatus.CANCELLED) {
+                        changed.numSeats = 0; // Withdrawn from the waitlist; seat cancellations are CANCELLED events
+                    }
+                }
+                break;
+            case BookingLedger.BOOKED:
+                applyBooked(record, offset, bookingId);
+                break;
+            case BookingLedger.CANCELLED:
+                applyCancelled(record, offset, bookingId);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void applyBooked(ByteBuffer record, int offset, long bookingId) {
+        int numSeats = record.getInt(offset + 4);
+        bookedSeats.merge(poolOf(record, offset), numSeats, Integer::sum);
+        IIRCTCService.BookingDetails booking = bookings.get(bookingId);
+        if (booking == null) {
+            // Ledgers written before bookings had their own CREATED event
+            booking = newBooking(record, offset, bookingId);
+            bookings.put(bookingId, booking);
+        }
+        int[][] seats = pendingSeats.remove(bookingId);
+        if (seats != null) {
+            booking.seats = new SeatAllocation(booking.trainNumber, booking.journeyDate, booking.travelClass,
+                seats[0], seats[1], booking.legs);
+        }
+        booking.status = BookingStatus.CONFIRMED;
+    }
+
+    private void applyCancelled(ByteBuffer record, int offset, long bookingId) {
+        int numSeats = record.getInt(offset + 4);
+        bookedSeats.merge(poolOf(record, offset), -numSeats, Integer::sum);
+        IIRCTCService.BookingDetails booking = bookings.get(bookingId);
+        if (booking == null) {
+            return; // Booked before a checkpoint that only kept counts
+        }
+        booking.numSeats -= numSeats;
+        booking.amountPaise -= record.getLong(offset + 16);
+        // Cancellation always gives back the seats at the end of the allocation
+        if (booking.seats != null) {
+            booking.seats = booking.seats.first(Math.max(0, booking.numSeats));
+        }
+        booking.status = booking.numSeats <= 0 ? BookingStatus.CANCELLED : BookingStatus.PARTIALLY_CANCELLED;
+    }
+
+    private IIRCTCService.BookingDetails newBooking(ByteBuffer record, int offset, long bookingId) {
+        IIRCTCService.BookingDetails booking = new IIRCTCService.BookingDetails(bookingId,
+            record.getInt(offset + 4), record.getLong(offset + 16));
+        booking.trainNumber = record.getInt(offset + 32);
+        int epochDay = record.getInt(offset + 36);
+        booking.journeyDate = epochDay == BookingLedger.NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+        booking.travelClass = classNames.computeIfAbsent(record.getInt(offset + 40), BookingLedger::decodeClass);
+        return booking;
+    }
+
+    private void readUserChunk(ByteBuffer record, int offset, long bookingId) {
+        int length = record.get(offset + 1);
+        ByteArrayOutputStream user = pendingUsers.computeIfAbsent(bookingId, id -> new ByteArrayOutputStream());
+        for (int i = 0; i < length; i++) {
+            user.write(record.get(offset + BookingLedger.PAYLOAD_OFFSET + i));
+        }
+    }
+
+    private void readSeatChunk(ByteBuffer record, int offset, long bookingId) {
+        int count = record.get(offset + 1);
+        int first = record.getInt(offset + 4);
+        int total = record.getShort(offset + 2);
+        int[][] seats = pendingSeats.computeIfAbsent(bookingId, id -> new int[][]{new int[total], new int[total]});
+        for (int i = 0; i < count && first + i < seats[0].length; i++) {
+            int at = offset + BookingLedger.PAYLOAD_OFFSET + i * 4;
+            seats[0][first + i] = record.getShort(at);
+            seats[1][first + i] = record.getShort(at + 2);
+        }
+    }
+
+    // Snapshots are only taken between events, so the continuation maps are always empty here
+    void writeTo(ObjectOutputStream out) throws IOException {
+        out.writeLong(maxBookingId);
+        out.writeInt(bookedSeats.size());
+        for (Map.Entry<Pool, Integer> pool : bookedSeats.entrySet()) {
+            out.writeInt(pool.getKey().trainNumber);
+            out.writeInt(pool.getKey().epochDay);
+            out.writeInt(pool.getKey().classCode);
+            out.writeInt(pool.getValue());
+        }
+        out.writeInt(bookings.size());
+        for (IIRCTCService.BookingDetails booking : bookings.values()) {
+            booking.writeExternal(out);
+        }
+    }
+
+    void readFrom(ObjectInputStream in) throws IOException {
+        readCounts(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            IIRCTCService.BookingDetails booking = new IIRCTCService.BookingDetails();
+            booking.readExternal(in);
+            bookings.put(booking.bookingId, booking);
+        }
+    }
+
+    // Checkpoints written before the ledger kept bookings hold only these
+    void readCounts(DataInput in) throws IOException {
+        maxBookingId = in.readLong();
+        int pools = in.readInt();
+        for (int i = 0; i < pools; i++) {
+            bookedSeats.put(new Pool(in.readInt(), in.readInt(), in.readInt()), in.readInt());
+        }
+    }
+
+    private static Pool poolOf(ByteBuffer record, int offset) {
+        return new Pool(record.getInt(offset + 32), record.getInt(offset + 36), record.getInt(offset + 40));
+    }
+
+    public static class Pool {
+        public final int trainNumber;
+        final int epochDay;
+        final int classCode;
+
+        Pool(int trainNumber, int epochDay, int classCode) {
+            this.trainNumber = trainNumber;
+            this.epochDay = epochDay;
+            this.classCode = classCode;
+        }
+
+        public LocalDate journeyDate() {
+            return epochDay == BookingLedger.NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+        }
+
+        public String travelClass() {
+            return BookingLedger.decodeClass(classCode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pool)) {
+                return false;
+            }
+            Pool other = (Pool) o;
+            return trainNumber == other.trainNumber && epochDay == other.epochDay && classCode == other.classCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (trainNumber * 31 + epochDay) * 31 + classCode;
+        }
+    }
+}
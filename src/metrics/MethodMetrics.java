@@ -0,0 +1,60 @@
+package metrics;
+
+import common.LatencyHistogram;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one remote method. Every field is striped or lock-free, so concurrent callers
+// of the same method never contend on a shared lock.
+public class MethodMetrics implements MethodMetricsMBean {
+    public final String service;
+    public final String method;
+    final LongAdder calls = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LongAdder inFlight = new LongAdder();
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    MethodMetrics(String service, String method) {
+        this.service = service;
+        this.method = method;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return latency.meanNanos() / 1e3;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return latency.valueAtPercentile(50) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return latency.valueAtPercentile(99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return latency.valueAtPercentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return latency.maxNanos() / 1e3;
+    }
+}
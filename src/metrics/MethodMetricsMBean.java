@@ -0,0 +1,20 @@
+package metrics;
+
+// JMX view of one remote method, under irctc:type=ServiceMethod,service=...,method=...
+public interface MethodMetricsMBean {
+    long getCalls();
+
+    long getErrors();
+
+    long getInFlight();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+}
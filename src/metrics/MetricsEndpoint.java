@@ -0,0 +1,41 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import common.Log;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Serves ServiceMetrics.render() as plain text on http://127.0.0.1:<port>/metrics.
+// Bound to loopback only; the port comes from -Dirctc.metrics.port (default 9404, -1 disables).
+public final class MetricsEndpoint {
+    private MetricsEndpoint() {
+    }
+
+    public static void startFromSystemProperties() {
+        start(Integer.getInteger("irctc.metrics.port", 9404));
+    }
+
+    public static void start(int port) {
+        if (port < 0) {
+            return;
+        }
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = ServiceMetrics.render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            Log.info("Metrics available at http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+        } catch (IOException e) {
+            Log.warn("Metrics endpoint could not start on port " + port + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package metrics;
+
+import common.Log;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Wraps a service behind its remote interface so every call is counted and timed. The wrapper
+// is a dynamic proxy: it can be exported and bound in place of the implementation, and it is
+// also what co-located services find in the ServiceDirectory, so direct calls are measured too.
+public final class ServiceMetrics {
+    private static final List<MethodMetrics> ALL = new CopyOnWriteArrayList<>();
+
+    private ServiceMetrics() {
+    }
+
+    public static boolean enabled() {
+        return !"false".equals(System.getProperty("irctc.metrics"));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Remote> T instrument(String serviceName, Class<T> type, T service) {
+        // Resolved once here, so a call only does a map lookup by Method
+        Map<Method, MethodMetrics> byMethod = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            MethodMetrics metrics = new MethodMetrics(serviceName, signature(method));
+            byMethod.put(method, metrics);
+            ALL.add(metrics);
+            registerMBean(metrics);
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            MethodMetrics metrics = byMethod.get(method);
+            if (metrics == null) {
+                return invoke(service, method, args); // equals, hashCode, toString
+            }
+            metrics.calls.increment();
+            metrics.inFlight.increment();
+            long start = System.nanoTime();
+            try {
+                return invoke(service, method, args);
+            } catch (Throwable t) {
+                metrics.errors.increment();
+                throw t;
+            } finally {
+                metrics.latency.record(System.nanoTime() - start);
+                metrics.inFlight.decrement();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Plain-text dump of every method, one metric per line, e.g.
+    //   irctc_calls_total{service="BookingService",method="bookTicket(BookingRequest)"} 42
+    public static String render() {
+        StringBuilder sb = new StringBuilder();
+        for (MethodMetrics m : ALL) {
+            String labels = "{service=\"" + m.service + "\",method=\"" + m.method + "\"";
+            line(sb, "irctc_calls_total", labels + "}", m.getCalls());
+            line(sb, "irctc_errors_total", labels + "}", m.getErrors());
+            line(sb, "irctc_in_flight", labels + "}", m.getInFlight());
+            line(sb, "irctc_latency_mean_us", labels + "}", m.getMeanMicros());
+            line(sb, "irctc_latency_us", labels + ",quantile=\"0.5\"}", m.getP50Micros());
+            line(sb, "irctc_latency_us", labels + ",quantile=\"0.99\"}", m.getP99Micros());
+            line(sb, "irctc_latency_us", labels + ",quantile=\"0.999\"}", m.getP999Micros());
+            line(sb, "irctc_latency_max_us", labels + "}", m.getMaxMicros());
+        }
+        line(sb, "irctc_log_dropped_total", "", Log.droppedCount());
+        return sb.toString();
+    }
+
+    private static void line(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name).append(labels).append(' ');
+        if (value == Math.rint(value)) {
+            sb.append((long) value);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.2f", value));
+        }
+        sb.append('\n');
+    }
+
+    // e.g. holdSeats(int,LocalDate,String,int)
+    private static String signature(Method method) {
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        Class<?>[] parameters = method.getParameterTypes();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(parameters[i].getSimpleName());
+        }
+        return sb.append(')').toString();
+    }
+
+    private static void registerMBean(MethodMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("irctc:type=ServiceMethod,service=" + metrics.service
+                + ",method=" + ObjectName.quote(metrics.method));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(metrics, name);
+        } catch (Exception e) {
+            Log.warn("ServiceMetrics: JMX registration failed for " + metrics.service + "." + metrics.method + ": " + e);
+        }
+    }
+}
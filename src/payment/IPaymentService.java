@@ -3,8 +3,11 @@ package payment;
 import common.IIRCTCService;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface IPaymentService extends Remote {
     boolean processPayment(IIRCTCService.BookingDetails booking) throws RemoteException;
     boolean processRefund(IIRCTCService.BookingDetails booking) throws RemoteException;
+    boolean[] processPayments(List<IIRCTCService.BookingDetails> bookings) throws RemoteException;
+    boolean[] processRefunds(List<IIRCTCService.BookingDetails> bookings) throws RemoteException;
 } 
\ No newline at end of file
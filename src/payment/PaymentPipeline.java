@@ -0,0 +1,101 @@
+package payment;
+
+import common.IIRCTCService;
+import common.ServiceExecutors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs payments off the thread that took the booking, at most `concurrency` at a time with up
+// to `queueCapacity` more waiting. Every payment gets its own future, which fails fast when
+// the queue is full and times out if the gateway is too slow. The future completes on a payment
+// worker, or on the JDK's shared timeout thread, so callers continue on an executor of their own.
+//
+// The limits are enforced with counters rather than by the pool size, so the same pipeline
+// runs on a fixed platform pool or on one virtual thread per payment (see ServiceExecutors).
+public class PaymentPipeline {
+    private final IPaymentService paymentService;
+    private final ExecutorService workers;
+    private final Semaphore gatewaySlots;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxAdmitted;
+    private final long timeoutMillis;
+
+    public PaymentPipeline(IPaymentService paymentService, int concurrency, int queueCapacity, long timeoutMillis) {
+        this.paymentService = paymentService;
+        this.timeoutMillis = timeoutMillis;
+        this.gatewaySlots = new Semaphore(concurrency);
+        this.maxAdmitted = concurrency + queueCapacity;
+        this.workers = ServiceExecutors.newWorkerPool("payment", concurrency);
+    }
+
+    // Configured from irctc.payment.concurrency, irctc.payment.queueCapacity and irctc.payment.timeoutMillis
+    public static PaymentPipeline fromSystemProperties(IPaymentService paymentService) {
+        return new PaymentPipeline(paymentService,
+            Integer.getInteger("irctc.payment.concurrency", 16),
+            Integer.getInteger("irctc.payment.queueCapacity", 1024),
+            Long.getLong("irctc.payment.timeoutMillis", 5000));
+    }
+
+    public CompletableFuture<Boolean> submit(IIRCTCService.BookingDetails booking) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (admitted.incrementAndGet() > maxAdmitted) {
+            admitted.decrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException("Payment queue is full"));
+            return result;
+        }
+        try {
+            workers.execute(() -> run(booking, result));
+        } catch (RejectedExecutionException e) {
+            admitted.decrementAndGet();
+            result.completeExceptionally(e);
+            return result;
+        }
+        return result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(IIRCTCService.BookingDetails booking, CompletableFuture<Boolean> result) {
+        try {
+            boolean paid;
+            gatewaySlots.acquire();
+            try {
+                paid = paymentService.processPayment(booking);
+            } finally {
+                gatewaySlots.release();
+            }
+            // Callers run their follow-up on their own executor; a continuation that does not
+            // still runs here, but never with the gateway slot taken
+            if (!result.complete(paid) && paid) {
+                // The caller already gave up on this payment, so the money must go back
+                gatewaySlots.acquire();
+                try {
+                    paymentService.processRefund(booking);
+                } finally {
+                    gatewaySlots.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            admitted.decrementAndGet();
+        }
+    }
+
+    // Starts the platform workers now rather than one per payment as the first ones arrive
+    public void warmUp() {
+        if (workers instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) workers).prestartAllCoreThreads();
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -3,9 +3,12 @@ package payment;
 import common.IIRCTCService;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 
 public class PaymentServiceImpl extends UnicastRemoteObject implements IPaymentService {
-    
+    // Simulated gateway round trip, e.g. -Dirctc.payment.latencyMs=200
+    private static final long GATEWAY_LATENCY_MILLIS = Long.getLong("irctc.payment.latencyMs", 0);
+
     public PaymentServiceImpl() throws RemoteException {
         super();
     }
@@ -13,12 +16,44 @@ public class PaymentServiceImpl extends UnicastRemoteObject implements IPaymentS
     @Override
     public boolean processPayment(IIRCTCService.BookingDetails booking) throws RemoteException {
         // Simulate payment processing
+        simulateGateway();
         return Math.random() > 0.1; // 90% success rate
     }
 
     @Override
     public boolean processRefund(IIRCTCService.BookingDetails booking) throws RemoteException {
         // Simulate refund processing
+        simulateGateway();
         return Math.random() > 0.05; // 95% success rate
     }
-} 
\ No newline at end of file
+
+    @Override
+    public boolean[] processPayments(List<IIRCTCService.BookingDetails> bookings) throws RemoteException {
+        boolean[] results = new boolean[bookings.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = processPayment(bookings.get(i));
+        }
+        return results;
+    }
+
+    @Override
+    public boolean[] processRefunds(List<IIRCTCService.BookingDetails> bookings) throws RemoteException {
+        boolean[] results = new boolean[bookings.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = processRefund(bookings.get(i));
+        }
+        return results;
+    }
+
+    private void simulateGateway() throws RemoteException {
+        if (GATEWAY_LATENCY_MILLIS <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(GATEWAY_LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Payment interrupted");
+        }
+    }
+}
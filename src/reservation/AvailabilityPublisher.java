@@ -0,0 +1,164 @@
+package reservation;
+
+import common.AvailabilitySnapshot;
+import common.IAvailabilityListener;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Collects availability changes and pushes them to subscribed clients as numbered deltas.
+//
+// Inventories only flag themselves dirty on the booking path. Every publish interval the
+// dirty pools are read once and sent as one delta, so a burst of bookings costs each client
+// one callback. Every listener has its own ordered queue; a client that falls behind has its
+// backlog dropped, sees a gap in the sequence numbers and pulls a full snapshot instead.
+class AvailabilityPublisher {
+    private static final long PUBLISH_INTERVAL_MILLIS = Long.getLong("irctc.availability.publishMillis", 50);
+    private static final int MAX_PENDING_PER_LISTENER = 64;
+
+    private final Set<TrainInventory> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<IAvailabilityListener, Channel> channels = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService pushers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "availability-push");
+        t.setDaemon(true);
+        return t;
+    });
+    private long sequence;
+
+    AvailabilityPublisher() {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::publish, PUBLISH_INTERVAL_MILLIS, PUBLISH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    void markDirty(TrainInventory inventory) {
+        dirty.add(inventory);
+    }
+
+    void subscribe(IAvailabilityListener listener) {
+        channels.putIfAbsent(listener, new Channel(listener));
+    }
+
+    void unsubscribe(IAvailabilityListener listener) {
+        channels.remove(listener);
+    }
+
+    // Synchronized with publish so the sequence number matches the counts it was read with
+    synchronized AvailabilitySnapshot fullSnapshot(Collection<TrainInventory> inventories) {
+        List<String> pools = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (TrainInventory inventory : inventories) {
+            for (int c = 0; c < inventory.config.classes.length; c++) {
+                pools.add(inventory.poolKey(c));
+                counts.add(inventory.available(c));
+            }
+        }
+        return snapshot(sequence, true, pools, counts);
+    }
+
+    private synchronized void publish() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> pools = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (TrainInventory inventory : dirty) {
+            dirty.remove(inventory);
+            int classes = inventory.takeDirtyClasses();
+            while (classes != 0) {
+                int c = Integer.numberOfTrailingZeros(classes);
+                classes &= classes - 1;
+                pools.add(inventory.poolKey(c));
+                counts.add(inventory.available(c));
+            }
+        }
+        if (pools.isEmpty()) {
+            return;
+        }
+        AvailabilitySnapshot delta = snapshot(++sequence, false, pools, counts);
+        for (Channel channel : channels.values()) {
+            channel.send(delta);
+        }
+    }
+
+    // Sends changes that did not come from a local inventory, e.g. relayed from another node
+    synchronized void publish(String[] pools, int[] available) {
+        AvailabilitySnapshot delta = new AvailabilitySnapshot(++sequence, false, pools, available);
+        for (Channel channel : channels.values()) {
+            channel.send(delta);
+        }
+    }
+
+    synchronized long currentSequence() {
+        return sequence;
+    }
+
+    private static AvailabilitySnapshot snapshot(long sequence, boolean full, List<String> pools, List<Integer> counts) {
+        int[] available = new int[counts.size()];
+        for (int i = 0; i < available.length; i++) {
+            available[i] = counts.get(i);
+        }
+        return new AvailabilitySnapshot(sequence, full, pools.toArray(new String[0]), available);
+    }
+
+    private class Channel {
+        private final IAvailabilityListener listener;
+        private final ConcurrentLinkedQueue<AvailabilitySnapshot> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Channel(IAvailabilityListener listener) {
+            this.listener = listener;
+        }
+
+        void send(AvailabilitySnapshot delta) {
+            if (size.incrementAndGet() > MAX_PENDING_PER_LISTENER) {
+                // Slow client: drop the backlog, it will notice the gap and resync. Only what
+                // was removed here comes off the count, drain() takes off what it polls itself.
+                int dropped = 0;
+                while (pending.poll() != null) {
+                    dropped++;
+                }
+                size.addAndGet(-dropped);
+            }
+            pending.add(delta);
+            if (draining.compareAndSet(false, true)) {
+                pushers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                AvailabilitySnapshot delta;
+                while ((delta = pending.poll()) != null) {
+                    size.decrementAndGet();
+                    listener.availabilityChanged(delta);
+                }
+            } catch (RemoteException e) {
+                // The client has gone away
+                channels.remove(listener);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+                pushers.execute(this::drain);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package reservation;
+
+import java.util.Arrays;
+
+// One coach worth of seats packed into a bitmap, a set bit means the seat is taken on at
+// least one leg. On a route with more than one leg each seat also has a mask of the legs it
+// is taken for, so the seat can be sold again for the others; freeSeats counts the seats
+// free for the whole route. Not thread safe, callers hold the owning TrainInventory lock.
+class CoachInventory {
+    private final long[] words;
+    private final int seats;
+    private int freeSeats;
+    private final long allLegs;
+    private final int legs;
+    // Null on a single-leg route, where the bitmap says everything
+    private final long[] legMasks;
+    // bestFit's first pass: a seat's leg mask if it is partly taken and fits, else 0
+    private final long[] fits;
+    // Seats taken for some legs but not all, the only ones a leg search has to look at
+    private int partlyTaken;
+
+    CoachInventory(int seats) {
+        this(seats, 1);
+    }
+
+    CoachInventory(int seats, int legs) {
+        this.seats = seats;
+        this.words = new long[(seats + 63) >>> 6];
+        this.freeSeats = seats;
+        this.legs = legs;
+        this.allLegs = -1L >>> (64 - legs);
+        this.legMasks = legs > 1 ? new long[seats] : null;
+        this.fits = legs > 1 ? new long[seats] : null;
+        // Mark the padding bits of the last word as taken so scans never hand them out
+        int tail = seats & 63;
+        if (tail != 0) {
+            words[words.length - 1] = -1L << tail;
+        }
+    }
+
+    int freeSeats() {
+        return freeSeats;
+    }
+
+    int seats() {
+        return seats;
+    }
+
+    boolean isTaken(int seat) {
+        return (words[seat >>> 6] & (1L << seat)) != 0;
+    }
+
+    // Finds n adjacent free seats, marks them taken and returns the first one, or -1
+    int allocateAdjacent(int n) {
+        if (n > freeSeats) {
+            return -1;
+        }
+        int pos = 0;
+        while (pos < seats) {
+            int start = nextClear(pos);
+            if (start >= seats) {
+                return -1;
+            }
+            int end = Math.min(nextSet(start), seats);
+            if (end - start >= n) {
+                setRange(start, start + n);
+                if (legMasks != null) {
+                    Arrays.fill(legMasks, start, start + n, allLegs);
+                }
+                freeSeats -= n;
+                return start;
+            }
+            pos = end;
+        }
+        return -1;
+    }
+
+    // Takes up to n free seats wherever they are, writing them into out starting at offset
+    int allocateAny(int n, int[] out, int offset) {
+        int taken = 0;
+        for (int w = 0; w < words.length && taken < n; w++) {
+            long free = ~words[w];
+            while (free != 0 && taken < n) {
+                long lowest = free & -free;
+                words[w] |= lowest;
+                free ^= lowest;
+                int seat = (w << 6) + Long.numberOfTrailingZeros(lowest);
+                if (legMasks != null) {
+                    legMasks[seat] = allLegs;
+                }
+                out[offset + taken++] = seat;
+            }
+        }
+        freeSeats -= taken;
+        return taken;
+    }
+
+    boolean claim(int seat) {
+        return claim(seat, allLegs);
+    }
+
+    // Takes the seat for these legs if it is free on all of them
+    boolean claim(int seat, long want) {
+        if (seat < 0 || seat >= seats || (takenLegs(seat) & want) != 0) {
+            return false;
+        }
+        if (!isTaken(seat)) {
+            words[seat >>> 6] |= 1L << seat;
+            freeSeats--;
+        }
+        if (legMasks != null) {
+            setLegs(seat, legMasks[seat] | want);
+        }
+        return true;
+    }
+
+    boolean release(int seat) {
+        return release(seat, allLegs);
+    }
+
+    // Gives back these legs of the seat if it is taken on all of them
+    boolean release(int seat, long want) {
+        if (seat < 0 || seat >= seats || (takenLegs(seat) & want) != want) {
+            return false;
+        }
+        if (legMasks != null) {
+            setLegs(seat, legMasks[seat] & ~want);
+            if (legMasks[seat] != 0) {
+                return true;
+            }
+        }
+        words[seat >>> 6] &= ~(1L << seat);
+        freeSeats++;
+        return true;
+    }
+
+    private void setLegs(int seat, long taken) {
+        partlyTaken += (isPartlyTaken(taken) ? 1 : 0) - (isPartlyTaken(legMasks[seat]) ? 1 : 0);
+        legMasks[seat] = taken;
+    }
+
+    private boolean isPartlyTaken(long taken) {
+        return taken != 0 && taken != allLegs;
+    }
+
+    private long takenLegs(int seat) {
+        if (legMasks != null) {
+            return legMasks[seat];
+        }
+        return isTaken(seat) ? allLegs : 0;
+    }
+
+    // Seats free on every one of these legs, including the ones free for the whole route.
+    // A straight pass over the masks with no early exit, which the JIT unrolls and vectorizes.
+    int freeFor(long want) {
+        if (legMasks == null || partlyTaken == 0) {
+            return freeSeats;
+        }
+        int free = 0;
+        for (int seat = 0; seat < seats; seat++) {
+            free += (legMasks[seat] & want) == 0 ? 1 : 0;
+        }
+        return free;
+    }
+
+    // The seat already sold on other legs that fits these legs best: the free stretch of
+    // legs around them is the shortest, so longer stretches stay whole for longer journeys.
+    // Returns the seat with the number of legs that stretch has to spare in the high half,
+    // or -1 if only seats free for the whole route fit. Seats free for the whole route are
+    // left to the caller, which has to count them against the capacity counter.
+    //
+    // The first pass tests every seat's mask with arithmetic only, no branches, so the JIT
+    // vectorizes it; the scoring pass then only looks at the seats it kept.
+    long bestFit(long want) {
+        if (legMasks == null || partlyTaken == 0) {
+            return -1;
+        }
+        long candidates = 0;
+        for (int seat = 0; seat < seats; seat++) {
+            long taken = legMasks[seat];
+            long clash = taken & want;
+            // All ones when nothing clashes, else zero; a free seat keeps its zero mask
+            long fit = taken & (((clash | -clash) >>> 63) - 1);
+            fits[seat] = fit;
+            candidates += (fit | -fit) >>> 63;
+        }
+        if (candidates == 0) {
+            return -1;
+        }
+        int first = Long.numberOfTrailingZeros(want);
+        int last = 64 - Long.numberOfLeadingZeros(want);
+        long below = (want & -want) - 1;
+        long best = -1;
+        for (int seat = 0; seat < seats && candidates > 0; seat++) {
+            long taken = fits[seat];
+            if (taken == 0) {
+                continue;
+            }
+            candidates--;
+            long before = taken & below;
+            long after = taken & ~(below | want);
+            int spare = first - (64 - Long.numberOfLeadingZeros(before))
+                + (after == 0 ? legs : Long.numberOfTrailingZeros(after)) - last;
+            if (best < 0 || spare < (int) (best >>> 32)) {
+                best = ((long) spare << 32) | seat;
+                if (spare == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    // A seat free for the whole route, or -1
+    int firstFree() {
+        int seat = nextClear(0);
+        return seat < seats ? seat : -1;
+    }
+
+    // Frees up to n seats taken for the whole route starting from the back of the coach, used
+    // when the caller only knows a seat count
+    int releaseAny(int n) {
+        int released = 0;
+        for (int seat = seats - 1; seat >= 0 && released < n; seat--) {
+            if (release(seat)) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    private int nextClear(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return seats;
+        }
+        long free = ~words[w] & (-1L << from);
+        while (free == 0) {
+            if (++w == words.length) {
+                return seats;
+            }
+            free = ~words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(free);
+    }
+
+    private int nextSet(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return seats;
+        }
+        long taken = words[w] & (-1L << from);
+        while (taken == 0) {
+            if (++w == words.length) {
+                return seats;
+            }
+            taken = words[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(taken);
+    }
+
+    private void setRange(int from, int to) {
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> -to;
+        if (first == last) {
+            words[first] |= firstMask & lastMask;
+            return;
+        }
+        words[first] |= firstMask;
+        for (int w = first + 1; w < last; w++) {
+            words[w] = -1L;
+        }
+        words[last] |= lastMask;
+    }
+}
@@ -0,0 +1,67 @@
+package reservation;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+// Hashed timing wheel for hold expiry. Scheduling is a queue append and each tick only
+// looks at one slot, so the cost does not grow with the number of outstanding holds.
+class HoldWheel {
+    private static final int SLOTS = 512;
+    private final long tickMillis;
+    private final ConcurrentLinkedQueue<long[]>[] slots;
+    private final LongConsumer onExpiry;
+    private final ScheduledExecutorService ticker;
+    private volatile long currentTick;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HoldWheel(long tickMillis, LongConsumer onExpiry) {
+        this.tickMillis = tickMillis;
+        this.onExpiry = onExpiry;
+        this.slots = new ConcurrentLinkedQueue[SLOTS];
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hold-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Entries are {holdId, expiresAtMillis}
+    void schedule(long holdId, long expiresAtMillis) {
+        long tick = Math.max(expiresAtMillis / tickMillis, currentTick + 1);
+        slots[(int) (tick % SLOTS)].add(new long[]{holdId, expiresAtMillis});
+    }
+
+    private void advance() {
+        long target = System.currentTimeMillis() / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            ConcurrentLinkedQueue<long[]> slot = slots[(int) (currentTick % SLOTS)];
+            int pending = slot.size();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < pending; i++) {
+                long[] entry = slot.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry[1] <= now) {
+                    onExpiry.accept(entry[0]);
+                } else {
+                    // Not due yet, goes round the wheel again
+                    slot.add(entry);
+                }
+            }
+        }
+    }
+
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,10 @@
+package reservation;
+
+import common.PartitionMap;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Published in the main registry as "PartitionMap" when reservation is split across nodes
+public interface IPartitionDirectory extends Remote {
+    PartitionMap getPartitionMap() throws RemoteException;
+}
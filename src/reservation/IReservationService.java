@@ -1,10 +1,58 @@
 package reservation;
 
+import common.AvailabilitySnapshot;
+import common.BookingRequest;
+import common.IAvailabilityListener;
+import common.SeatAllocation;
+import common.SeatHold;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.time.LocalDate;
+import java.util.List;
 
 public interface IReservationService extends Remote {
+    // The original single seat pool behind the count-based calls
+    int DEFAULT_TRAIN = 0;
+    String DEFAULT_CLASS = "GN";
+
     boolean checkAvailability(int numSeats) throws RemoteException;
     void updateSeats(int numSeats, boolean isBooking) throws RemoteException;
     int getAvailableSeats() throws RemoteException;
-} 
\ No newline at end of file
+
+    // Seat level inventory keyed by (train, journey date, class), for the whole route unless
+    // legs (see SeatAllocation.legs) says which part of it. A seat sold for some legs can be
+    // sold again for the others; the count without legs is of seats free for the whole route.
+    SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException;
+    SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs) throws RemoteException;
+    int releaseSeats(SeatAllocation allocation) throws RemoteException;
+    int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass) throws RemoteException;
+    int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass, long legs) throws RemoteException;
+    // Every seat of the class, booked or not; -1 for a train or class that does not exist
+    int getCapacity(int trainNumber, String travelClass) throws RemoteException;
+
+    // Hold/commit/release protocol, a hold is null when there is not enough capacity
+    SeatHold holdSeats(int numSeats) throws RemoteException;
+    SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException;
+    SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs) throws RemoteException;
+    SeatAllocation commitHold(SeatHold hold) throws RemoteException;
+    boolean releaseHold(SeatHold hold) throws RemoteException;
+
+    // Batch forms, results line up with the input and hold what the single call would return
+    List<SeatHold> holdSeats(List<BookingRequest> requests) throws RemoteException;
+    List<SeatAllocation> commitHolds(List<SeatHold> holds) throws RemoteException;
+    void releaseHolds(List<SeatHold> holds) throws RemoteException;
+
+    // Sets up every train's inventory for the date and warms up the seat paths, ahead of a
+    // rush of bookings for it
+    void prepare(LocalDate journeyDate) throws RemoteException;
+
+    // Versioned availability: a full snapshot to start from, then deltas pushed to subscribers
+    AvailabilitySnapshot getAvailabilitySnapshot() throws RemoteException;
+    void subscribe(IAvailabilityListener listener) throws RemoteException;
+    void unsubscribe(IAvailabilityListener listener) throws RemoteException;
+
+    // Re-applies seats booked before a restart, used by the server while replaying the ledger
+    void restoreBookedSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException;
+    // The same, for bookings whose exact seats are known
+    void restoreSeats(List<SeatAllocation> allocations) throws RemoteException;
+}
@@ -0,0 +1,23 @@
+package reservation;
+
+import common.PartitionMap;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+
+public class PartitionDirectoryImpl extends UnicastRemoteObject implements IPartitionDirectory {
+    private volatile PartitionMap partitionMap;
+
+    public PartitionDirectoryImpl(PartitionMap partitionMap) throws RemoteException {
+        super();
+        this.partitionMap = partitionMap;
+    }
+
+    @Override
+    public PartitionMap getPartitionMap() throws RemoteException {
+        return partitionMap;
+    }
+
+    public void update(PartitionMap partitionMap) {
+        this.partitionMap = partitionMap;
+    }
+}
@@ -0,0 +1,50 @@
+package reservation;
+
+import common.Log;
+import metrics.MetricsEndpoint;
+import metrics.ServiceMetrics;
+import search.RouteCatalog;
+import search.TrainRoute;
+import java.rmi.Remote;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+// One partition of the seat inventory in its own JVM. The node serves whichever trains the
+// partition map assigns to it; it binds a ReservationService in its own registry and the
+// router in IRCTCServer finds it there. For a local two-node setup:
+//
+//   java -Dirctc.node.port=1100 reservation.ReservationNode
+//   java -Dirctc.node.port=1101 reservation.ReservationNode
+//   java -Dirctc.reservation.nodes=localhost:1100,localhost:1101 server.IRCTCServer
+//
+// Nodes keep no ledger of their own: the server replays booked seats into them at startup,
+// so restart the nodes together with the server.
+public class ReservationNode {
+    public static void main(String[] args) {
+        int port = Integer.getInteger("irctc.node.port", 1100);
+        try {
+            Registry registry = LocateRegistry.createRegistry(port);
+            ReservationServiceImpl reservationService = new ReservationServiceImpl();
+            // Same -Dirctc.search.* settings as the server, so both see the same generated trains
+            for (TrainRoute route : RouteCatalog.syntheticFromSystemProperties()) {
+                reservationService.registerTrain(route.config);
+            }
+            Remote endpoint = reservationService;
+            if (ServiceMetrics.enabled()) {
+                IReservationService instrumented = ServiceMetrics.instrument("ReservationService",
+                    IReservationService.class, reservationService);
+                UnicastRemoteObject.exportObject(instrumented, 0);
+                endpoint = instrumented;
+            }
+            registry.rebind("ReservationService", endpoint);
+            // Several nodes usually share a host, so the metrics page is opt-in here
+            MetricsEndpoint.start(Integer.getInteger("irctc.metrics.port", -1));
+            Log.info("Reservation node running on port " + port);
+        } catch (Exception e) {
+            Log.error("Reservation node exception", e);
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,495 @@
+package reservation;
+
+import common.AvailabilitySnapshot;
+import common.BookingRequest;
+import common.IAvailabilityListener;
+import common.IIRCTCService;
+import common.Log;
+import common.PartitionMap;
+import common.SeatAllocation;
+import common.SeatHold;
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+// Stands in for the reservation service when inventory is split across ReservationNodes.
+// Every call is forwarded to the node that owns the train according to the partition map
+// published in the registry; batch calls are split per node and the results put back in
+// input order. The router also subscribes to every node's availability stream and relays
+// it to its own subscribers under a single sequence, so clients see one service.
+public class ReservationRouter extends UnicastRemoteObject implements IReservationService {
+    private final PartitionMap partitionMap;
+    // Connection to each partition's node, null until someone asks for it. The first caller
+    // to find none connects and the others wait for the same future, so a node is looked up,
+    // rebuilt and subscribed to once, without any lock held.
+    private final AtomicReferenceArray<CompletableFuture<IReservationService>> connections;
+    // Last delta sequence relayed from each node, guarded by the node's lock
+    private final long[] nodeSequences;
+    private final Object[] nodeLocks;
+    private final NodeListener[] nodeListeners;
+    private final AvailabilityPublisher publisher = new AvailabilityPublisher();
+    // The node stub each partition was last connected through; a different one means the node restarted
+    private final AtomicReferenceArray<IReservationService> incarnations;
+    // Bookings holding seats, to rebuild a node that restarted; null until the server has
+    // restored the nodes at startup
+    private volatile Supplier<List<IIRCTCService.BookingDetails>> bookedSeats;
+
+    private interface NodeCall<T> {
+        T call(IReservationService node) throws RemoteException;
+    }
+
+    public ReservationRouter(IPartitionDirectory directory) throws RemoteException {
+        super();
+        this.partitionMap = directory.getPartitionMap();
+        int count = partitionMap.partitionCount();
+        this.connections = new AtomicReferenceArray<>(count);
+        this.incarnations = new AtomicReferenceArray<>(count);
+        this.nodeSequences = new long[count];
+        this.nodeLocks = new Object[count];
+        this.nodeListeners = new NodeListener[count];
+        for (int p = 0; p < count; p++) {
+            nodeLocks[p] = new Object();
+            nodeListeners[p] = new NodeListener(p);
+            UnicastRemoteObject.exportObject(nodeListeners[p], 0);
+            try {
+                node(p);
+            } catch (RemoteException e) {
+                // Not up yet; the first call routed to it will try again
+                Log.warn("ReservationRouter: Node " + partitionMap.nodes[p] + " unreachable: " + e.getMessage());
+            }
+        }
+        Log.info("ReservationRouter: Routing across " + count + " partitions " + Arrays.toString(partitionMap.nodes));
+    }
+
+    // Nodes keep no ledger, so one that restarts comes back with every seat free. From now on a
+    // node seen for the first time, or through a new stub, is given these bookings back before
+    // any call is routed to it.
+    public void rebuildRestartedNodesFrom(Supplier<List<IIRCTCService.BookingDetails>> bookedSeats) {
+        this.bookedSeats = bookedSeats;
+    }
+
+    public PartitionMap getPartitionMap() {
+        return partitionMap;
+    }
+
+    @Override
+    public boolean checkAvailability(int numSeats) throws RemoteException {
+        return onTrain(DEFAULT_TRAIN, node -> node.checkAvailability(numSeats));
+    }
+
+    @Override
+    public void updateSeats(int numSeats, boolean isBooking) throws RemoteException {
+        onTrain(DEFAULT_TRAIN, node -> {
+            node.updateSeats(numSeats, isBooking);
+            return null;
+        });
+    }
+
+    @Override
+    public int getAvailableSeats() throws RemoteException {
+        return onTrain(DEFAULT_TRAIN, IReservationService::getAvailableSeats);
+    }
+
+    @Override
+    public SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        return onTrain(trainNumber, node -> node.allocateSeats(trainNumber, journeyDate, travelClass, numSeats));
+    }
+
+    @Override
+    public SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats,
+                                        long legs) throws RemoteException {
+        return onTrain(trainNumber, node -> node.allocateSeats(trainNumber, journeyDate, travelClass, numSeats, legs));
+    }
+
+    @Override
+    public int releaseSeats(SeatAllocation allocation) throws RemoteException {
+        return onTrain(allocation.trainNumber, node -> node.releaseSeats(allocation));
+    }
+
+    @Override
+    public int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass) throws RemoteException {
+        return onTrain(trainNumber, node -> node.getAvailableSeats(trainNumber, journeyDate, travelClass));
+    }
+
+    @Override
+    public int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass, long legs) throws RemoteException {
+        return onTrain(trainNumber, node -> node.getAvailableSeats(trainNumber, journeyDate, travelClass, legs));
+    }
+
+    @Override
+    public int getCapacity(int trainNumber, String travelClass) throws RemoteException {
+        return onTrain(trainNumber, node -> node.getCapacity(trainNumber, travelClass));
+    }
+
+    @Override
+    public SeatHold holdSeats(int numSeats) throws RemoteException {
+        return onTrain(DEFAULT_TRAIN, node -> node.holdSeats(numSeats));
+    }
+
+    @Override
+    public SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        return onTrain(trainNumber, node -> node.holdSeats(trainNumber, journeyDate, travelClass, numSeats));
+    }
+
+    @Override
+    public SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs)
+            throws RemoteException {
+        return onTrain(trainNumber, node -> node.holdSeats(trainNumber, journeyDate, travelClass, numSeats, legs));
+    }
+
+    // Hold ids are only unique per node, which is fine: a hold always goes back to the node that made it
+    @Override
+    public SeatAllocation commitHold(SeatHold hold) throws RemoteException {
+        return onHolds(partitionMap.partitionOf(hold.trainNumber), node -> node.commitHold(hold));
+    }
+
+    // A hold that went with a restarted node has nothing left to release
+    @Override
+    public boolean releaseHold(SeatHold hold) throws RemoteException {
+        try {
+            return onHolds(partitionMap.partitionOf(hold.trainNumber), node -> node.releaseHold(hold));
+        } catch (HoldsLostException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<SeatHold> holdSeats(List<BookingRequest> requests) throws RemoteException {
+        List<List<Integer>> byNode = split(requests.size(), i -> requests.get(i).trainNumber);
+        SeatHold[] holds = new SeatHold[requests.size()];
+        for (int p = 0; p < byNode.size(); p++) {
+            List<Integer> indexes = byNode.get(p);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            List<BookingRequest> part = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                part.add(requests.get(i));
+            }
+            List<SeatHold> partHolds = onPartition(p, node -> node.holdSeats(part));
+            for (int j = 0; j < indexes.size(); j++) {
+                holds[indexes.get(j)] = partHolds.get(j);
+            }
+        }
+        return Arrays.asList(holds);
+    }
+
+    @Override
+    public List<SeatAllocation> commitHolds(List<SeatHold> holds) throws RemoteException {
+        List<List<Integer>> byNode = split(holds.size(), i -> holds.get(i).trainNumber);
+        SeatAllocation[] allocations = new SeatAllocation[holds.size()];
+        for (int p = 0; p < byNode.size(); p++) {
+            List<Integer> indexes = byNode.get(p);
+            if (indexes.isEmpty()) {
+                continue;
+            }
+            List<SeatHold> part = new ArrayList<>(indexes.size());
+            for (int i : indexes) {
+                part.add(holds.get(i));
+            }
+            List<SeatAllocation> partAllocations;
+            try {
+                partAllocations = onHolds(p, node -> node.commitHolds(part));
+            } catch (HoldsLostException e) {
+                // Left null, the same as holds that expired
+                Log.warn("ReservationRouter: " + e.getMessage() + ", " + part.size() + " holds not committed");
+                continue;
+            }
+            for (int j = 0; j < indexes.size(); j++) {
+                allocations[indexes.get(j)] = partAllocations.get(j);
+            }
+        }
+        return Arrays.asList(allocations);
+    }
+
+    @Override
+    public void releaseHolds(List<SeatHold> holds) throws RemoteException {
+        List<List<Integer>> byNode = split(holds.size(), i -> holds.get(i).trainNumber);
+        for (int p = 0; p < byNode.size(); p++) {
+            List<SeatHold> part = new ArrayList<>();
+            for (int i : byNode.get(p)) {
+                part.add(holds.get(i));
+            }
+            if (!part.isEmpty()) {
+                try {
+                    onHolds(p, node -> {
+                        node.releaseHolds(part);
+                        return null;
+                    });
+                } catch (HoldsLostException e) {
+                    // Gone with the node, nothing to release
+                }
+            }
+        }
+    }
+
+    // Every node, so one that cannot be reached does not keep the others cold
+    @Override
+    public void prepare(LocalDate journeyDate) throws RemoteException {
+        for (int p = 0; p < connections.length(); p++) {
+            try {
+                onPartition(p, node -> {
+                    node.prepare(journeyDate);
+                    return null;
+                });
+            } catch (RemoteException e) {
+                Log.warn("ReservationRouter: Node " + partitionMap.nodes[p] + " not prepared: " + e.getMessage());
+            }
+        }
+    }
+
+    // Pools from every node under the router's sequence. The sequence is read first, so any
+    // change relayed while the nodes are being read is numbered after it and still reaches
+    // the client.
+    @Override
+    public AvailabilitySnapshot getAvailabilitySnapshot() throws RemoteException {
+        long sequence = publisher.currentSequence();
+        List<String> pools = new ArrayList<>();
+        List<Integer> counts = new ArrayList<>();
+        for (int p = 0; p < connections.length(); p++) {
+            AvailabilitySnapshot part = onPartition(p, IReservationService::getAvailabilitySnapshot);
+            for (int i = 0; i < part.pools.length; i++) {
+                pools.add(part.pools[i]);
+                counts.add(part.available[i]);
+            }
+        }
+        int[] available = new int[counts.size()];
+        for (int i = 0; i < available.length; i++) {
+            available[i] = counts.get(i);
+        }
+        return new AvailabilitySnapshot(sequence, true, pools.toArray(new String[0]), available);
+    }
+
+    @Override
+    public void subscribe(IAvailabilityListener listener) throws RemoteException {
+        publisher.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribe(IAvailabilityListener listener) throws RemoteException {
+        publisher.unsubscribe(listener);
+    }
+
+    @Override
+    public void restoreBookedSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        onTrain(trainNumber, node -> {
+            node.restoreBookedSeats(trainNumber, journeyDate, travelClass, numSeats);
+            return null;
+        });
+    }
+
+    @Override
+    public void restoreSeats(List<SeatAllocation> allocations) throws RemoteException {
+        List<List<Integer>> byNode = split(allocations.size(), i -> allocations.get(i).trainNumber);
+        for (int p = 0; p < byNode.size(); p++) {
+            List<SeatAllocation> part = new ArrayList<>();
+            for (int i : byNode.get(p)) {
+                part.add(allocations.get(i));
+            }
+            if (!part.isEmpty()) {
+                onPartition(p, node -> {
+                    node.restoreSeats(part);
+                    return null;
+                });
+            }
+        }
+    }
+
+    // Receives one node's deltas. Each node numbers its own deltas; a gap means one was
+    // dropped, and the node's full snapshot is relayed instead (counts are absolute, so that
+    // is safe).
+    private class NodeListener implements IAvailabilityListener {
+        private final int partition;
+
+        NodeListener(int partition) {
+            this.partition = partition;
+        }
+
+        @Override
+        public void availabilityChanged(AvailabilitySnapshot delta) throws RemoteException {
+            synchronized (nodeLocks[partition]) {
+                if (delta.sequence <= nodeSequences[partition]) {
+                    return;
+                }
+                if (delta.sequence == nodeSequences[partition] + 1) {
+                    nodeSequences[partition] = delta.sequence;
+                    publisher.publish(delta.pools, delta.available);
+                    return;
+                }
+            }
+            resyncNode(partition);
+        }
+    }
+
+    private void resyncNode(int partition) throws RemoteException {
+        resyncNode(partition, node(partition));
+    }
+
+    // The snapshot is read before taking the lock, so relayed deltas never wait on the node; one
+    // older than what was already relayed is dropped
+    private void resyncNode(int partition, IReservationService node) throws RemoteException {
+        AvailabilitySnapshot full = node.getAvailabilitySnapshot();
+        synchronized (nodeLocks[partition]) {
+            if (full.sequence >= nodeSequences[partition]) {
+                nodeSequences[partition] = full.sequence;
+                publisher.publish(full.pools, full.available);
+            }
+        }
+    }
+
+    private <T> T onTrain(int trainNumber, NodeCall<T> call) throws RemoteException {
+        return onPartition(partitionMap.partitionOf(trainNumber), call);
+    }
+
+    // A node that restarted has a new stub; connection failures mean the call never ran, so
+    // it is safe to look the node up again and retry once. node() rebuilds a restarted node's
+    // bookings before handing it out. Only for calls that do not depend on a hold, see onHolds.
+    private <T> T onPartition(int partition, NodeCall<T> call) throws RemoteException {
+        IReservationService node = node(partition);
+        try {
+            return call.call(node);
+        } catch (ConnectException | NoSuchObjectException e) {
+            disconnect(partition, node);
+            return call.call(node(partition));
+        }
+    }
+
+    // Holds live only in the node that made them and are not rebuilt, so a call about holds is
+    // retried only if the node turns out to be the same one. After a restart it fails with
+    // HoldsLostException, and a commit is treated like an expired hold: the payment is refunded.
+    private <T> T onHolds(int partition, NodeCall<T> call) throws RemoteException {
+        IReservationService node = node(partition);
+        try {
+            return call.call(node);
+        } catch (ConnectException | NoSuchObjectException e) {
+            disconnect(partition, node);
+            IReservationService current = node(partition);
+            if (!current.equals(node)) {
+                throw new HoldsLostException(partitionMap.nodes[partition], e);
+            }
+            return call.call(current);
+        }
+    }
+
+    private static final class HoldsLostException extends RemoteException {
+        private static final long serialVersionUID = 1L;
+
+        HoldsLostException(String node, Exception cause) {
+            super("Seat hold lost, node " + node + " restarted", cause);
+        }
+    }
+
+    // Drops the connection only if it is still the one that failed, so a node a concurrent
+    // caller has already reconnected to is kept
+    private void disconnect(int partition, IReservationService failed) {
+        CompletableFuture<IReservationService> connection = connections.get(partition);
+        if (connection != null && connection.isDone() && !connection.isCompletedExceptionally()
+                && connection.join() == failed) {
+            connections.compareAndSet(partition, connection, null);
+        }
+    }
+
+    private IReservationService node(int partition) throws RemoteException {
+        while (true) {
+            CompletableFuture<IReservationService> connection = connections.get(partition);
+            if (connection != null && !connection.isCompletedExceptionally()) {
+                try {
+                    return connection.join();
+                } catch (CompletionException e) {
+                    throw asRemoteException(e.getCause());
+                }
+            }
+            // Nobody connected, or the last attempt failed: this caller tries again
+            CompletableFuture<IReservationService> mine = new CompletableFuture<>();
+            if (connections.compareAndSet(partition, connection, mine)) {
+                return connect(partition, mine);
+            }
+        }
+    }
+
+    private IReservationService connect(int partition, CompletableFuture<IReservationService> connection)
+            throws RemoteException {
+        IReservationService node;
+        try {
+            String[] hostPort = partitionMap.nodes[partition].split(":");
+            try {
+                node = (IReservationService) LocateRegistry.getRegistry(hostPort[0], Integer.parseInt(hostPort[1]))
+                    .lookup("ReservationService");
+            } catch (NotBoundException e) {
+                throw new RemoteException("No ReservationService bound at " + partitionMap.nodes[partition], e);
+            }
+            if (!node.equals(incarnations.get(partition))) {
+                // Until this succeeds the partition stays unconnected and every call to it fails
+                rebuild(partition, node);
+                incarnations.set(partition, node);
+            }
+            synchronized (nodeLocks[partition]) {
+                nodeSequences[partition] = 0;
+            }
+            node.subscribe(nodeListeners[partition]);
+        } catch (RemoteException | RuntimeException e) {
+            connection.completeExceptionally(e);
+            throw e;
+        }
+        connection.complete(node);
+        resyncNode(partition, node);
+        return node;
+    }
+
+    private static RemoteException asRemoteException(Throwable error) {
+        if (error instanceof RemoteException) {
+            return (RemoteException) error;
+        }
+        return new RemoteException("Reservation node unavailable: " + error.getMessage(), error);
+    }
+
+    private void rebuild(int partition, IReservationService node) throws RemoteException {
+        Supplier<List<IIRCTCService.BookingDetails>> source = bookedSeats;
+        if (source == null) {
+            return;
+        }
+        List<SeatAllocation> allocations = new ArrayList<>();
+        int byCount = 0;
+        for (IIRCTCService.BookingDetails booking : source.get()) {
+            if (partitionMap.partitionOf(booking.trainNumber) != partition) {
+                continue;
+            }
+            if (booking.seats != null) {
+                allocations.add(booking.seats);
+            } else {
+                // Booked before seat numbers were recorded
+                node.restoreBookedSeats(booking.trainNumber, booking.journeyDate, booking.travelClass, booking.numSeats);
+                byCount++;
+            }
+        }
+        node.restoreSeats(allocations);
+        Log.info("ReservationRouter: Node " + partitionMap.nodes[partition] + " is new, gave it back "
+            + (allocations.size() + byCount) + " bookings");
+    }
+
+    private interface TrainOf {
+        int trainNumber(int index);
+    }
+
+    private List<List<Integer>> split(int size, TrainOf trainOf) {
+        List<List<Integer>> byNode = new ArrayList<>(connections.length());
+        for (int p = 0; p < connections.length(); p++) {
+            byNode.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            byNode.get(partitionMap.partitionOf(trainOf.trainNumber(i))).add(i);
+        }
+        return byNode;
+    }
+}
@@ -1,33 +1,409 @@
 package reservation;
 
+import common.AvailabilitySnapshot;
+import common.BookingRequest;
+import common.IAvailabilityListener;
+import common.Log;
+import common.SeatAllocation;
+import common.SeatHold;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ReservationServiceImpl extends UnicastRemoteObject implements IReservationService {
     private static final int TOTAL_SEATS = 100;
-    private int availableSeats;
+    // The original single pool of seats, still used by bookTicket(int) and the GUI
+    private static final TrainConfig DEFAULT_TRAIN_CONFIG = new TrainConfig(DEFAULT_TRAIN, "General",
+        new String[]{DEFAULT_CLASS}, new int[]{1}, new int[]{TOTAL_SEATS});
+
+    private final Map<Integer, TrainConfig> trains = new ConcurrentHashMap<>();
+    private final Map<String, TrainInventory> inventories = new ConcurrentHashMap<>();
+    private final TrainInventory defaultInventory;
+    private final AvailabilityPublisher publisher = new AvailabilityPublisher();
+    private static final long HOLD_TTL_MILLIS = Long.getLong("irctc.hold.ttlSeconds", 120) * 1000;
+    private final AtomicLong holdCounter = new AtomicLong();
+    // Sized for the holds a rush keeps open at once, so the table does not grow in the middle of one
+    private static final int EXPECTED_HOLDS = Integer.getInteger("irctc.hold.expected", 4096);
+    private static final int WARMUP_ROUNDS = Integer.getInteger("irctc.burst.warmupRounds", 20000);
+    private final Map<Long, SeatHold> activeHolds = new ConcurrentHashMap<>(EXPECTED_HOLDS);
+    // Seats already picked for holds on part of a route
+    private final Map<Long, SeatAllocation> heldSeats = new ConcurrentHashMap<>();
+    private final HoldWheel holdWheel = new HoldWheel(250, this::expireHold);
 
     public ReservationServiceImpl() throws RemoteException {
         super();
-        this.availableSeats = TOTAL_SEATS;
+        this.defaultInventory = new TrainInventory(DEFAULT_TRAIN_CONFIG, null, publisher);
+        for (TrainConfig config : TrainConfig.defaults()) {
+            registerTrain(config);
+        }
+    }
+
+    public void registerTrain(TrainConfig config) {
+        trains.put(config.trainNumber, config);
+    }
+
+    @Override
+    public void restoreBookedSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        if (numSeats <= 0) {
+            return;
+        }
+        if (allocateSeats(trainNumber, journeyDate, travelClass, numSeats) == null) {
+            throw new RemoteException("Ledger has more seats booked on train " + trainNumber + " than it has capacity");
+        }
     }
 
     @Override
-    public synchronized boolean checkAvailability(int numSeats) throws RemoteException {
-        return availableSeats >= numSeats;
+    public void restoreSeats(List<SeatAllocation> allocations) throws RemoteException {
+        for (SeatAllocation allocation : allocations) {
+            TrainInventory inventory = inventoryFor(allocation.trainNumber, allocation.journeyDate);
+            int classIndex = classIndex(inventory, allocation.travelClass);
+            int claimed = inventory.claim(classIndex, allocation, legs(inventory, allocation.legs));
+            if (claimed < allocation.size()) {
+                // Two bookings on one seat; keep the count right and let the second have other seats
+                Log.warn("ReservationService: " + (allocation.size() - claimed) + " seats of " + allocation
+                    + " were already taken, restoring them by count");
+                if (inventory.allocate(classIndex, allocation.size() - claimed, legs(inventory, allocation.legs)) == null) {
+                    throw new RemoteException("Ledger has more seats booked on train " + allocation.trainNumber
+                        + " than it has capacity");
+                }
+            }
+        }
     }
 
     @Override
-    public synchronized void updateSeats(int numSeats, boolean isBooking) throws RemoteException {
+    public boolean checkAvailability(int numSeats) throws RemoteException {
+        return defaultInventory.available(0) >= numSeats;
+    }
+
+    @Override
+    public void updateSeats(int numSeats, boolean isBooking) throws RemoteException {
         if (isBooking) {
-            availableSeats -= numSeats;
+            if (defaultInventory.allocate(0, numSeats) == null) {
+                throw new RemoteException("Not enough seats available");
+            }
         } else {
-            availableSeats += numSeats;
+            defaultInventory.releaseAny(0, numSeats);
         }
     }
 
     @Override
     public int getAvailableSeats() throws RemoteException {
-        return availableSeats;
+        return defaultInventory.available(0);
+    }
+
+    @Override
+    public SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        TrainInventory inventory = inventoryFor(trainNumber, journeyDate);
+        return inventory.allocate(classIndex(inventory, travelClass), numSeats);
+    }
+
+    @Override
+    public SeatAllocation allocateSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats,
+                                        long legs) throws RemoteException {
+        TrainInventory inventory = inventoryFor(trainNumber, journeyDate);
+        return inventory.allocate(classIndex(inventory, travelClass), numSeats, legs(inventory, legs));
+    }
+
+    @Override
+    public int releaseSeats(SeatAllocation allocation) throws RemoteException {
+        TrainInventory inventory = inventoryFor(allocation.trainNumber, allocation.journeyDate);
+        return inventory.release(classIndex(inventory, allocation.travelClass), allocation,
+            legs(inventory, allocation.legs));
+    }
+
+    @Override
+    public int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass) throws RemoteException {
+        TrainInventory inventory = inventoryFor(trainNumber, journeyDate);
+        return inventory.available(classIndex(inventory, travelClass));
+    }
+
+    @Override
+    public int getAvailableSeats(int trainNumber, LocalDate journeyDate, String travelClass, long legs) throws RemoteException {
+        TrainInventory inventory = inventoryFor(trainNumber, journeyDate);
+        return inventory.available(classIndex(inventory, travelClass), legs(inventory, legs));
+    }
+
+    @Override
+    public int getCapacity(int trainNumber, String travelClass) throws RemoteException {
+        TrainConfig config = trainNumber == DEFAULT_TRAIN ? DEFAULT_TRAIN_CONFIG : trains.get(trainNumber);
+        int classIndex = config == null ? -1 : config.classIndex(travelClass);
+        return classIndex < 0 ? -1 : config.capacity(classIndex);
+    }
+
+    @Override
+    public SeatHold holdSeats(int numSeats) throws RemoteException {
+        return holdSeats(DEFAULT_TRAIN, null, DEFAULT_CLASS, numSeats);
+    }
+
+    @Override
+    public SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats) throws RemoteException {
+        return holdSeats(trainNumber, journeyDate, travelClass, numSeats, SeatAllocation.ALL_LEGS);
+    }
+
+    @Override
+    public SeatHold holdSeats(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs)
+            throws RemoteException {
+        TrainInventory inventory = inventoryFor(trainNumber, journeyDate);
+        int classIndex = classIndex(inventory, travelClass);
+        long wanted = legs(inventory, legs);
+        SeatAllocation picked = null;
+        if (wanted == inventory.config.allLegs()) {
+            if (!inventory.reserve(classIndex, numSeats)) {
+                return null;
+            }
+        } else if ((picked = inventory.allocate(classIndex, numSeats, wanted)) == null) {
+            return null;
+        }
+        return track(trainNumber, journeyDate, travelClass, numSeats, legs, picked);
+    }
+
+    private SeatHold track(int trainNumber, LocalDate journeyDate, String travelClass, int numSeats, long legs,
+                           SeatAllocation picked) {
+        SeatHold hold = new SeatHold(holdCounter.incrementAndGet(), trainNumber, journeyDate, travelClass,
+            numSeats, legs, System.currentTimeMillis() + HOLD_TTL_MILLIS);
+        if (picked != null) {
+            heldSeats.put(hold.holdId, picked);
+        }
+        activeHolds.put(hold.holdId, hold);
+        holdWheel.schedule(hold.holdId, hold.expiresAtMillis);
+        return hold;
+    }
+
+    @Override
+    public SeatAllocation commitHold(SeatHold hold) throws RemoteException {
+        // Whoever removes the hold first owns it, so commit, release and expiry never overlap
+        SeatHold active = activeHolds.remove(hold.holdId);
+        if (active == null) {
+            throw new RemoteException("Seat hold " + hold.holdId + " has expired or was already released");
+        }
+        SeatAllocation picked = heldSeats.remove(active.holdId);
+        if (picked != null) {
+            return picked;
+        }
+        TrainInventory inventory = inventoryFor(active.trainNumber, active.journeyDate);
+        return inventory.assignReserved(classIndex(inventory, active.travelClass), active.numSeats);
+    }
+
+    @Override
+    public boolean releaseHold(SeatHold hold) throws RemoteException {
+        SeatHold active = activeHolds.remove(hold.holdId);
+        if (active == null) {
+            return false;
+        }
+        unreserve(active);
+        return true;
+    }
+
+    // Whole-route requests on the same pool are reserved together with one CAS, in the order
+    // they are listed; requests for part of a route are placed one by one
+    @Override
+    public List<SeatHold> holdSeats(List<BookingRequest> requests) throws RemoteException {
+        SeatHold[] holds = new SeatHold[requests.size()];
+        // A batch is nearly always for one pool, so the pools are found by a scan
+        List<PoolBatch> pools = new ArrayList<>(1);
+        for (int i = 0; i < holds.length; i++) {
+            BookingRequest request = requests.get(i);
+            try {
+                TrainInventory inventory = inventoryFor(request.trainNumber, request.journeyDate);
+                int classIndex = classIndex(inventory, request.travelClass);
+                if (legs(inventory, request.legs) != inventory.config.allLegs()) {
+                    holds[i] = holdSeats(request.trainNumber, request.journeyDate, request.travelClass,
+                        request.numSeats, request.legs);
+                    continue;
+                }
+                PoolBatch pool = null;
+                for (PoolBatch candidate : pools) {
+                    if (candidate.inventory == inventory && candidate.classIndex == classIndex) {
+                        pool = candidate;
+                        break;
+                    }
+                }
+                if (pool == null) {
+                    pool = new PoolBatch(inventory, classIndex, Math.min(holds.length, 64));
+                    pools.add(pool);
+                }
+                pool.add(i, request.numSeats);
+            } catch (RemoteException e) {
+                // A bad item (unknown train or class) only fails itself
+            }
+        }
+        for (PoolBatch pool : pools) {
+            boolean[] granted = pool.inventory.reserveInOrder(pool.classIndex, Arrays.copyOf(pool.numSeats, pool.size));
+            for (int j = 0; j < pool.size; j++) {
+                if (granted[j]) {
+                    BookingRequest request = requests.get(pool.indexes[j]);
+                    holds[pool.indexes[j]] = track(request.trainNumber, request.journeyDate, request.travelClass,
+                        request.numSeats, request.legs, null);
+                }
+            }
+        }
+        return Arrays.asList(holds);
+    }
+
+    private static final class PoolBatch {
+        final TrainInventory inventory;
+        final int classIndex;
+        int[] indexes;
+        int[] numSeats;
+        int size;
+
+        PoolBatch(TrainInventory inventory, int classIndex, int capacity) {
+            this.inventory = inventory;
+            this.classIndex = classIndex;
+            this.indexes = new int[capacity];
+            this.numSeats = new int[capacity];
+        }
+
+        void add(int index, int seats) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                numSeats = Arrays.copyOf(numSeats, size * 2);
+            }
+            indexes[size] = index;
+            numSeats[size++] = seats;
+        }
+    }
+
+    @Override
+    public List<SeatAllocation> commitHolds(List<SeatHold> holds) throws RemoteException {
+        List<SeatAllocation> allocations = new ArrayList<>(holds.size());
+        for (SeatHold hold : holds) {
+            try {
+                allocations.add(commitHold(hold));
+            } catch (RemoteException e) {
+                allocations.add(null);
+            }
+        }
+        return allocations;
+    }
+
+    @Override
+    public void releaseHolds(List<SeatHold> holds) throws RemoteException {
+        for (SeatHold hold : holds) {
+            releaseHold(hold);
+        }
+    }
+
+    @Override
+    public void prepare(LocalDate journeyDate) throws RemoteException {
+        long start = System.currentTimeMillis();
+        for (TrainConfig config : trains.values()) {
+            inventoryFor(config.trainNumber, journeyDate);
+        }
+        warmUp();
+        Log.info("ReservationService: Prepared " + trains.size() + " trains for " + journeyDate + " in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // Runs the seat paths on a scratch inventory no client sees, so they are loaded and
+    // compiled before the first real booking needs them
+    private void warmUp() {
+        TrainConfig config = new TrainConfig(DEFAULT_TRAIN, "Warm-up", new String[]{DEFAULT_CLASS},
+            new int[]{4}, new int[]{72}, 4);
+        TrainInventory scratch = new TrainInventory(config, null, null);
+        long route = config.allLegs();
+        int[] batch = {2, 1, 3};
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            if (scratch.reserve(0, 2)) {
+                scratch.release(0, scratch.assignReserved(0, 2), route);
+            }
+            boolean[] granted = scratch.reserveInOrder(0, batch);
+            for (int i = 0; i < batch.length; i++) {
+                if (granted[i]) {
+                    scratch.unreserve(0, batch[i]);
+                }
+            }
+            long legs = 3L << (round % 3);
+            SeatAllocation part = scratch.allocate(0, 1, legs);
+            // Only called to compile the per-leg count
+            scratch.available(0, legs);
+            if (part != null) {
+                scratch.release(0, part, legs);
+            }
+        }
+    }
+
+    @Override
+    public AvailabilitySnapshot getAvailabilitySnapshot() throws RemoteException {
+        List<TrainInventory> all = new ArrayList<>(inventories.values());
+        all.add(0, defaultInventory);
+        return publisher.fullSnapshot(all);
+    }
+
+    @Override
+    public void subscribe(IAvailabilityListener listener) throws RemoteException {
+        publisher.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribe(IAvailabilityListener listener) throws RemoteException {
+        publisher.unsubscribe(listener);
+    }
+
+    private void expireHold(long holdId) {
+        SeatHold active = activeHolds.remove(holdId);
+        if (active != null) {
+            try {
+                unreserve(active);
+                if (Log.isEnabled(Log.Level.DEBUG)) {
+                    Log.debug("ReservationService: Hold " + holdId + " expired, " + active.numSeats + " seats returned");
+                }
+            } catch (RemoteException e) {
+                Log.warn("ReservationService: Failed to return expired hold " + holdId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void unreserve(SeatHold hold) throws RemoteException {
+        SeatAllocation picked = heldSeats.remove(hold.holdId);
+        if (picked != null) {
+            releaseSeats(picked);
+            return;
+        }
+        TrainInventory inventory = inventoryFor(hold.trainNumber, hold.journeyDate);
+        inventory.unreserve(classIndex(inventory, hold.travelClass), hold.numSeats);
+    }
+
+    private TrainInventory inventoryFor(int trainNumber, LocalDate journeyDate) throws RemoteException {
+        if (trainNumber == DEFAULT_TRAIN) {
+            return defaultInventory;
+        }
+        TrainConfig config = trains.get(trainNumber);
+        if (config == null) {
+            throw new RemoteException("Unknown train " + trainNumber);
+        }
+        if (journeyDate == null) {
+            throw new RemoteException("Journey date is required for train " + trainNumber);
+        }
+        return inventories.computeIfAbsent(trainNumber + "/" + journeyDate,
+            key -> new TrainInventory(config, journeyDate, publisher));
+    }
+
+    // ALL_LEGS stands for every leg of the route; anything else has to be a run of its legs
+    private long legs(TrainInventory inventory, long legs) throws RemoteException {
+        long route = inventory.config.allLegs();
+        if (legs == SeatAllocation.ALL_LEGS) {
+            return route;
+        }
+        long run = legs >>> Long.numberOfTrailingZeros(legs);
+        if (legs == 0 || (legs & ~route) != 0 || (run & (run + 1)) != 0) {
+            throw new RemoteException("Train " + inventory.config.trainNumber + " has no journey over legs "
+                + Long.toBinaryString(legs) + ", its stops are numbered 0 to " + inventory.config.legs);
+        }
+        return legs;
+    }
+
+    private int classIndex(TrainInventory inventory, String travelClass) throws RemoteException {
+        int index = inventory.config.classIndex(travelClass);
+        if (index < 0) {
+            throw new RemoteException("Train " + inventory.config.trainNumber + " has no class " + travelClass);
+        }
+        return index;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package reservation;
+
+import common.SeatAllocation;
+import java.util.List;
+
+// Static layout of a train: which classes it carries, how many coaches/seats each has, and
+// how many legs its route has between stops. A seat can be sold separately for each leg.
+public class TrainConfig {
+    public final int trainNumber;
+    public final String name;
+    public final String[] classes;
+    public final int[] coachesPerClass;
+    public final int[] seatsPerCoach;
+    public final int legs;
+
+    public TrainConfig(int trainNumber, String name, String[] classes, int[] coachesPerClass, int[] seatsPerCoach) {
+        this(trainNumber, name, classes, coachesPerClass, seatsPerCoach, 1);
+    }
+
+    public TrainConfig(int trainNumber, String name, String[] classes, int[] coachesPerClass, int[] seatsPerCoach,
+                       int legs) {
+        if (legs < 1 || legs > SeatAllocation.MAX_LEGS) {
+            throw new IllegalArgumentException("A route has between 1 and " + SeatAllocation.MAX_LEGS + " legs");
+        }
+        if (classes.length != coachesPerClass.length || classes.length != seatsPerCoach.length) {
+            throw new IllegalArgumentException("Class layout arrays must have the same length");
+        }
+        if (classes.length > 32) {
+            throw new IllegalArgumentException("A train can carry at most 32 classes");
+        }
+        this.trainNumber = trainNumber;
+        this.name = name;
+        this.classes = classes;
+        this.coachesPerClass = coachesPerClass;
+        this.seatsPerCoach = seatsPerCoach;
+        this.legs = legs;
+    }
+
+    // The named trains every reservation service starts with. Their stops are in search.RouteCatalog.
+    public static List<TrainConfig> defaults() {
+        return List.of(
+            new TrainConfig(12951, "Mumbai Rajdhani",
+                new String[]{"1A", "2A", "3A"}, new int[]{1, 3, 6}, new int[]{24, 48, 64}, 4),
+            new TrainConfig(12627, "Karnataka Express",
+                new String[]{"2A", "3A", "SL"}, new int[]{2, 4, 10}, new int[]{48, 64, 72}, 9),
+            new TrainConfig(12301, "Howrah Rajdhani",
+                new String[]{"1A", "2A", "3A"}, new int[]{1, 4, 8}, new int[]{24, 48, 64}, 6));
+    }
+
+    // Every leg of the route
+    public long allLegs() {
+        return -1L >>> (SeatAllocation.MAX_LEGS - legs);
+    }
+
+    public int classIndex(String travelClass) {
+        for (int i = 0; i < classes.length; i++) {
+            if (classes[i].equals(travelClass)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int capacity(int classIndex) {
+        return coachesPerClass[classIndex] * seatsPerCoach[classIndex];
+    }
+}
@@ -0,0 +1,293 @@
+package reservation;
+
+import common.AvailabilitySnapshot;
+import common.SeatAllocation;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Seat inventory of one train on one journey date. Each instance is its own lock so
+// bookings on different trains or dates never contend.
+//
+// Capacity is gated by a per-class counter of seats that are free for the whole route and
+// not held. Seats are reserved against it with a CAS, so holds never take the lock and can
+// never oversell; seat numbers are only picked from the bitmaps when a reservation is turned
+// into an allocation.
+//
+// A booking for some legs of the route is placed under the lock straight away. It goes on
+// the best fitting seat already sold for other legs, and only takes a seat free for the
+// whole route, reserved from the counter like any other, when none fits.
+class TrainInventory {
+    final TrainConfig config;
+    final LocalDate journeyDate;
+    private final CoachInventory[][] coaches;
+    private final AtomicIntegerArray available;
+    // Classes whose count changed since the publisher last looked, one bit per class
+    private final AtomicInteger dirtyClasses = new AtomicInteger();
+    // Null for a scratch inventory nobody is told about
+    private final AvailabilityPublisher publisher;
+
+    TrainInventory(TrainConfig config, LocalDate journeyDate, AvailabilityPublisher publisher) {
+        this.config = config;
+        this.journeyDate = journeyDate;
+        this.publisher = publisher;
+        this.coaches = new CoachInventory[config.classes.length][];
+        this.available = new AtomicIntegerArray(config.classes.length);
+        for (int c = 0; c < config.classes.length; c++) {
+            coaches[c] = new CoachInventory[config.coachesPerClass[c]];
+            for (int i = 0; i < coaches[c].length; i++) {
+                coaches[c][i] = new CoachInventory(config.seatsPerCoach[c], config.legs);
+            }
+            available.set(c, config.capacity(c));
+        }
+    }
+
+    int available(int classIndex) {
+        return available.get(classIndex);
+    }
+
+    // Seats free on all of these legs and not promised to a hold
+    int available(int classIndex, long legs) {
+        if (legs == config.allLegs()) {
+            return available(classIndex);
+        }
+        return countFree(classIndex, legs);
+    }
+
+    private synchronized int countFree(int classIndex, long legs) {
+        int free = 0;
+        int wholeRoute = 0;
+        for (CoachInventory coach : coaches[classIndex]) {
+            free += coach.freeFor(legs);
+            wholeRoute += coach.freeSeats();
+        }
+        // Seats free for the whole route beyond the counter are reserved by holds
+        return free - (wholeRoute - available.get(classIndex));
+    }
+
+    int totalAvailable() {
+        int total = 0;
+        for (int c = 0; c < available.length(); c++) {
+            total += available.get(c);
+        }
+        return total;
+    }
+
+    // Lock-free capacity reservation, the seats still have to be assigned or unreserved
+    boolean reserve(int classIndex, int numSeats) {
+        if (numSeats <= 0) {
+            return false;
+        }
+        while (true) {
+            int current = available.get(classIndex);
+            if (current < numSeats) {
+                return false;
+            }
+            if (available.compareAndSet(classIndex, current, current - numSeats)) {
+                markDirty(classIndex);
+                return true;
+            }
+        }
+    }
+
+    // Reserves for a batch with one CAS, granting requests in the order given. One that does
+    // not fit is refused and later, smaller ones may still fit, as if each had called reserve
+    // in turn.
+    boolean[] reserveInOrder(int classIndex, int[] numSeats) {
+        boolean[] granted = new boolean[numSeats.length];
+        while (true) {
+            int current = available.get(classIndex);
+            int left = current;
+            for (int i = 0; i < numSeats.length; i++) {
+                granted[i] = numSeats[i] > 0 && numSeats[i] <= left;
+                left -= granted[i] ? numSeats[i] : 0;
+            }
+            if (left == current) {
+                return granted;
+            }
+            if (available.compareAndSet(classIndex, current, left)) {
+                markDirty(classIndex);
+                return granted;
+            }
+        }
+    }
+
+    void unreserve(int classIndex, int numSeats) {
+        available.addAndGet(classIndex, numSeats);
+        markDirty(classIndex);
+    }
+
+    SeatAllocation allocate(int classIndex, int numSeats) {
+        if (!reserve(classIndex, numSeats)) {
+            return null;
+        }
+        return assignReserved(classIndex, numSeats);
+    }
+
+    // legs is a contiguous run of this route's legs
+    SeatAllocation allocate(int classIndex, int numSeats, long legs) {
+        if (legs == config.allLegs()) {
+            return allocate(classIndex, numSeats);
+        }
+        if (numSeats <= 0) {
+            return null;
+        }
+        return allocateLegs(classIndex, numSeats, legs);
+    }
+
+    // One seat at a time, each on the best fit left. All or nothing.
+    private synchronized SeatAllocation allocateLegs(int classIndex, int numSeats, long legs) {
+        int[] coachNumbers = new int[numSeats];
+        int[] seatNumbers = new int[numSeats];
+        CoachInventory[] classCoaches = coaches[classIndex];
+        for (int s = 0; s < numSeats; s++) {
+            long best = -1;
+            for (int i = 0; i < classCoaches.length; i++) {
+                long fit = classCoaches[i].bestFit(legs);
+                if (fit >= 0 && (best < 0 || (fit >>> 32) < (best >>> 32))) {
+                    best = fit;
+                    coachNumbers[s] = i;
+                    if ((fit >>> 32) == 0) {
+                        break;
+                    }
+                }
+            }
+            if (best >= 0) {
+                seatNumbers[s] = (int) best;
+            } else if (reserve(classIndex, 1)) {
+                int coach = 0;
+                while (classCoaches[coach].freeSeats() == 0) {
+                    coach++;
+                }
+                coachNumbers[s] = coach;
+                seatNumbers[s] = classCoaches[coach].firstFree();
+            } else {
+                freeLegs(classIndex, coachNumbers, seatNumbers, s, legs);
+                return null;
+            }
+            classCoaches[coachNumbers[s]].claim(seatNumbers[s], legs);
+        }
+        return new SeatAllocation(config.trainNumber, journeyDate, config.classes[classIndex], coachNumbers,
+            seatNumbers, legs);
+    }
+
+    // Picks seats for capacity that was already reserved. Prefers numSeats adjacent seats
+    // in one coach and only splits the party across coaches when no coach has a long
+    // enough run left. Always succeeds because the counter never exceeds the free bits.
+    synchronized SeatAllocation assignReserved(int classIndex, int numSeats) {
+        int[] coachNumbers = new int[numSeats];
+        int[] seatNumbers = new int[numSeats];
+        CoachInventory[] classCoaches = coaches[classIndex];
+
+        for (int i = 0; i < classCoaches.length; i++) {
+            int start = classCoaches[i].allocateAdjacent(numSeats);
+            if (start >= 0) {
+                for (int s = 0; s < numSeats; s++) {
+                    coachNumbers[s] = i;
+                    seatNumbers[s] = start + s;
+                }
+                return newAllocation(classIndex, coachNumbers, seatNumbers);
+            }
+        }
+
+        int filled = 0;
+        for (int i = 0; i < classCoaches.length && filled < numSeats; i++) {
+            int taken = classCoaches[i].allocateAny(numSeats - filled, seatNumbers, filled);
+            for (int s = filled; s < filled + taken; s++) {
+                coachNumbers[s] = i;
+            }
+            filled += taken;
+        }
+        return newAllocation(classIndex, coachNumbers, seatNumbers);
+    }
+
+    // Marks exactly these seats taken, for bookings restored from the ledger. Returns how many
+    // of them were free.
+    synchronized int claim(int classIndex, SeatAllocation allocation, long legs) {
+        int claimed = 0;
+        int wholeRoute = 0;
+        CoachInventory[] classCoaches = coaches[classIndex];
+        for (int i = 0; i < allocation.seats.length; i++) {
+            int coach = allocation.coaches[i];
+            if (coach < 0 || coach >= classCoaches.length) {
+                continue;
+            }
+            boolean wasFree = !classCoaches[coach].isTaken(allocation.seats[i]);
+            if (classCoaches[coach].claim(allocation.seats[i], legs)) {
+                claimed++;
+                wholeRoute += wasFree ? 1 : 0;
+            }
+        }
+        available.addAndGet(classIndex, -wholeRoute);
+        markDirty(classIndex);
+        return claimed;
+    }
+
+    int release(int classIndex, SeatAllocation allocation, long legs) {
+        return freeLegs(classIndex, allocation.coaches, allocation.seats, allocation.seats.length, legs);
+    }
+
+    // Gives back the legs of the first count seats and returns how many of them were taken.
+    // Seats that end up free for the whole route go back on the counter.
+    private synchronized int freeLegs(int classIndex, int[] coachNumbers, int[] seatNumbers, int count, long legs) {
+        int released = 0;
+        int wholeRoute = 0;
+        CoachInventory[] classCoaches = coaches[classIndex];
+        for (int i = 0; i < count; i++) {
+            int coach = coachNumbers[i];
+            if (coach >= 0 && coach < classCoaches.length && classCoaches[coach].release(seatNumbers[i], legs)) {
+                released++;
+                wholeRoute += classCoaches[coach].isTaken(seatNumbers[i]) ? 0 : 1;
+            }
+        }
+        if (wholeRoute > 0) {
+            unreserve(classIndex, wholeRoute);
+        }
+        return released;
+    }
+
+    // Count-only release for callers that never saw seat numbers
+    int releaseAny(int classIndex, int numSeats) {
+        int released = freeAny(classIndex, numSeats);
+        unreserve(classIndex, released);
+        return released;
+    }
+
+    private synchronized int freeAny(int classIndex, int numSeats) {
+        int released = 0;
+        CoachInventory[] classCoaches = coaches[classIndex];
+        for (int i = classCoaches.length - 1; i >= 0 && released < numSeats; i--) {
+            released += classCoaches[i].releaseAny(numSeats - released);
+        }
+        return released;
+    }
+
+    String poolKey(int classIndex) {
+        return AvailabilitySnapshot.poolKey(config.trainNumber, journeyDate, config.classes[classIndex]);
+    }
+
+    // Only the first change after a publish has to tell the publisher
+    private void markDirty(int classIndex) {
+        int bit = 1 << classIndex;
+        while (true) {
+            int current = dirtyClasses.get();
+            if ((current & bit) != 0) {
+                return;
+            }
+            if (dirtyClasses.compareAndSet(current, current | bit)) {
+                if (current == 0 && publisher != null) {
+                    publisher.markDirty(this);
+                }
+                return;
+            }
+        }
+    }
+
+    int takeDirtyClasses() {
+        return dirtyClasses.getAndSet(0);
+    }
+
+    private SeatAllocation newAllocation(int classIndex, int[] coachNumbers, int[] seatNumbers) {
+        return new SeatAllocation(config.trainNumber, journeyDate, config.classes[classIndex], coachNumbers, seatNumbers);
+    }
+}
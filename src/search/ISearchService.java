@@ -0,0 +1,13 @@
+package search;
+
+import common.TrainSearchResult;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ISearchService extends Remote {
+    // Trains leaving fromStation on date that later call at toStation, by departure time, with
+    // the seats left in each class. Station codes are as on the route, e.g. NDLS.
+    List<TrainSearchResult> searchTrains(String fromStation, String toStation, LocalDate date) throws RemoteException;
+}
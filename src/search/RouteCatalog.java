@@ -0,0 +1,132 @@
+package search;
+
+import reservation.TrainConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Routes the search service starts with: the named trains every reservation service carries,
+// plus any number of generated ones for load and benchmark runs.
+public class RouteCatalog {
+    // Generated trains are numbered from here, clear of the named trains and the benchmark train
+    public static final int FIRST_SYNTHETIC_TRAIN = 30000;
+    public static final int MAX_SYNTHETIC_TRAINS = 50000;
+
+    private static final String[][] LAYOUTS = {
+        {"1A", "2A", "3A"},
+        {"2A", "3A", "SL", "2S"},
+        {"3A", "SL", "2S"},
+        {"CC", "2S"},
+    };
+    private static final int[] SEATS_PER_COACH = {24, 48, 64, 72, 78, 108};
+    private static final String[] SEAT_CLASSES = {"1A", "2A", "3A", "SL", "CC", "2S"};
+
+    // Stops of the trains in TrainConfig.defaults()
+    public static List<TrainRoute> defaults() {
+        List<TrainRoute> routes = new ArrayList<>();
+        for (TrainConfig config : TrainConfig.defaults()) {
+            switch (config.trainNumber) {
+                case 12951:
+                    routes.add(new TrainRoute(config,
+                        new String[]{"MMCT", "BRC", "RTM", "KOTA", "NDLS"},
+                        new int[]{1020, 1266, 1480, 1635, 1952},
+                        new int[]{1020, 1271, 1483, 1640, 1952},
+                        new int[]{0, 392, 653, 920, 1384}, TrainRoute.DAILY));
+                    break;
+                case 12627:
+                    routes.add(new TrainRoute(config,
+                        new String[]{"SBC", "GTL", "WADI", "SUR", "DD", "BSL", "BPL", "JHS", "AGC", "NDLS"},
+                        new int[]{1160, 1460, 1710, 1870, 2180, 2575, 2975, 3225, 3410, 3625},
+                        new int[]{1160, 1470, 1720, 1880, 2185, 2585, 2985, 3233, 3415, 3625},
+                        new int[]{0, 293, 520, 660, 950, 1320, 1710, 2000, 2215, 2444}, TrainRoute.DAILY));
+                    break;
+                case 12301:
+                    routes.add(new TrainRoute(config,
+                        new String[]{"HWH", "DHN", "GAYA", "DDU", "PRYJ", "CNB", "NDLS"},
+                        new int[]{1010, 1210, 1360, 1515, 1640, 1775, 2045},
+                        new int[]{1010, 1215, 1362, 1525, 1642, 1780, 2045},
+                        new int[]{0, 259, 458, 664, 817, 1010, 1447}, TrainRoute.DAILY));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return routes;
+    }
+
+    // irctc.search.syntheticTrains generated trains (none by default) over
+    // irctc.search.syntheticStations stations, from seed irctc.search.seed. Every JVM that
+    // generates with the same settings gets the same trains.
+    public static List<TrainRoute> syntheticFromSystemProperties() {
+        return synthetic(Integer.getInteger("irctc.search.syntheticTrains", 0),
+            Integer.getInteger("irctc.search.syntheticStations", 1000), Long.getLong("irctc.search.seed", 42));
+    }
+
+    // Stations sit on a ring and each train runs a few stations at a time along it in one
+    // direction, so neighbouring stations share many trains the way a real corridor does.
+    // Most trains run daily, the rest on some days of the week.
+    public static List<TrainRoute> synthetic(int trains, int stations, long seed) {
+        if (trains > MAX_SYNTHETIC_TRAINS) {
+            throw new IllegalArgumentException("At most " + MAX_SYNTHETIC_TRAINS + " synthetic trains");
+        }
+        if (trains > 0 && stations < 2) {
+            throw new IllegalArgumentException("Synthetic trains need at least two stations");
+        }
+        Random random = new Random(seed);
+        List<TrainRoute> routes = new ArrayList<>(trains);
+        for (int t = 0; t < trains; t++) {
+            int stopCount = Math.min(stations, 4 + random.nextInt(20));
+            int direction = random.nextBoolean() ? 1 : -1;
+            int station = random.nextInt(stations);
+            boolean[] visited = new boolean[stations];
+            String[] codes = new String[stopCount];
+            int[] arrival = new int[stopCount];
+            int[] departure = new int[stopCount];
+            int[] km = new int[stopCount];
+            int minute = random.nextInt(1440);
+            int distance = 0;
+            int stops = 0;
+            while (stops < stopCount && !visited[station]) {
+                visited[station] = true;
+                codes[stops] = stationCode(station);
+                arrival[stops] = minute;
+                departure[stops] = stops == 0 ? minute : minute + 2 + random.nextInt(9);
+                km[stops] = distance;
+                int hopKm = 15 + random.nextInt(120);
+                minute = departure[stops] + hopKm * 60 / (45 + random.nextInt(66));
+                distance += hopKm;
+                station = Math.floorMod(station + direction * (1 + random.nextInt(8)), stations);
+                stops++;
+            }
+            if (stops < 2) {
+                continue;
+            }
+            int number = FIRST_SYNTHETIC_TRAIN + t;
+            int runsOn = random.nextInt(10) < 7 ? TrainRoute.DAILY : 1 + random.nextInt(TrainRoute.DAILY);
+            routes.add(new TrainRoute(layout(number, stops - 1, random), Arrays.copyOf(codes, stops),
+                Arrays.copyOf(arrival, stops), Arrays.copyOf(departure, stops),
+                Arrays.copyOf(km, stops), runsOn));
+        }
+        return routes;
+    }
+
+    public static String stationCode(int station) {
+        return String.format("S%04d", station);
+    }
+
+    private static TrainConfig layout(int number, int legs, Random random) {
+        String[] classes = LAYOUTS[random.nextInt(LAYOUTS.length)];
+        int[] coaches = new int[classes.length];
+        int[] seats = new int[classes.length];
+        for (int c = 0; c < classes.length; c++) {
+            coaches[c] = 1 + random.nextInt(8);
+            for (int s = 0; s < SEAT_CLASSES.length; s++) {
+                if (SEAT_CLASSES[s].equals(classes[c])) {
+                    seats[c] = SEATS_PER_COACH[s];
+                }
+            }
+        }
+        return new TrainConfig(number, "Express " + number, classes, coaches, seats, legs);
+    }
+}
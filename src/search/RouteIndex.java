@@ -0,0 +1,97 @@
+package search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Station pair to the trains that call at both, in that order. Station codes are numbered
+// once at build time, and every pair maps to a long array of entries packing the train's
+// slot with the positions of the two stops on its route, so a lookup is one hash probe and
+// the scan touches no objects. Built once and never changed, so any thread may read it.
+public class RouteIndex {
+    private final TrainRoute[] routes;
+    private final Map<String, Integer> stationIds = new HashMap<>();
+    private final Map<Long, long[]> pairs = new HashMap<>();
+
+    public RouteIndex(List<TrainRoute> trains) {
+        this.routes = trains.toArray(new TrainRoute[0]);
+        // While building, element 0 of each array counts the entries after it
+        Map<Long, long[]> building = new HashMap<>();
+        for (int slot = 0; slot < routes.length; slot++) {
+            String[] stations = routes[slot].stations;
+            int[] stops = new int[stations.length];
+            for (int i = 0; i < stations.length; i++) {
+                Integer id = stationIds.get(stations[i]);
+                if (id == null) {
+                    id = stationIds.size();
+                    stationIds.put(stations[i], id);
+                }
+                stops[i] = id;
+            }
+            for (int from = 0; from < stations.length; from++) {
+                for (int to = from + 1; to < stations.length; to++) {
+                    long key = pairKey(stops[from], stops[to]);
+                    long[] entries = building.get(key);
+                    if (entries == null) {
+                        entries = new long[4];
+                        building.put(key, entries);
+                    } else if (entries[0] + 1 == entries.length) {
+                        entries = Arrays.copyOf(entries, entries.length * 2);
+                        building.put(key, entries);
+                    }
+                    entries[(int) ++entries[0]] = entry(slot, from, to);
+                }
+            }
+        }
+        for (Map.Entry<Long, long[]> pair : building.entrySet()) {
+            long[] entries = pair.getValue();
+            pairs.put(pair.getKey(), Arrays.copyOfRange(entries, 1, 1 + (int) entries[0]));
+        }
+    }
+
+    // -1 for a station no train calls at
+    public int stationId(String code) {
+        Integer id = stationIds.get(code);
+        return id == null ? -1 : id;
+    }
+
+    public int stationCount() {
+        return stationIds.size();
+    }
+
+    public int trainCount() {
+        return routes.length;
+    }
+
+    public int pairCount() {
+        return pairs.size();
+    }
+
+    // Entries for the trains from one station to the other, empty if there are none. Read
+    // them with route, fromStop and toStop.
+    public long[] trainsBetween(int fromStation, int toStation) {
+        long[] entries = pairs.get(pairKey(fromStation, toStation));
+        return entries == null ? new long[0] : entries;
+    }
+
+    public TrainRoute route(long entry) {
+        return routes[(int) (entry >>> 32)];
+    }
+
+    public int fromStop(long entry) {
+        return (int) (entry >>> 16) & 0xFFFF;
+    }
+
+    public int toStop(long entry) {
+        return (int) entry & 0xFFFF;
+    }
+
+    private static long pairKey(int fromStation, int toStation) {
+        return ((long) fromStation << 32) | toStation;
+    }
+
+    private static long entry(int slot, int fromStop, int toStop) {
+        return ((long) slot << 32) | ((long) fromStop << 16) | toStop;
+    }
+}
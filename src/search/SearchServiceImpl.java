@@ -0,0 +1,96 @@
+package search;
+
+import client.AvailabilityCache;
+import common.Log;
+import common.ServiceLocator;
+import common.TrainSearchResult;
+import reservation.IReservationService;
+import reservation.TrainConfig;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Answers station-pair searches from the route index, joined with a local copy of seat
+// availability that the reservation service's delta stream keeps current. A search never
+// calls the reservation service; pools it has not reported yet have had nothing booked, so
+// they show the full capacity of the class. The stream counts seats free for the whole
+// route, so for a shorter journey the count is a floor.
+public class SearchServiceImpl extends UnicastRemoteObject implements ISearchService {
+    private final RouteIndex index;
+    private IReservationService reservationService;
+    private AvailabilityCache availability;
+
+    public SearchServiceImpl(List<TrainRoute> routes) throws RemoteException {
+        super();
+        long start = System.currentTimeMillis();
+        this.index = new RouteIndex(routes);
+        Log.info("SearchService: Indexed " + index.trainCount() + " trains, " + index.stationCount() + " stations and "
+            + index.pairCount() + " station pairs in " + (System.currentTimeMillis() - start) + " ms");
+        initializeServices();
+        if (reservationService != null) {
+            availability = new AvailabilityCache(reservationService);
+            availability.start();
+            ServiceLocator.shared().onReconnect("ReservationService", () -> {
+                try {
+                    availability.reconnected();
+                } catch (RemoteException e) {
+                    Log.warn("SearchService: No availability updates after reconnecting: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void initializeServices() {
+        // Co-located dependencies are called directly, the rest through stubs that reconnect by themselves
+        ServiceLocator locator = ServiceLocator.shared();
+        try {
+            reservationService = locator.lookup("ReservationService", IReservationService.class);
+        } catch (RemoteException e) {
+            Log.warn("SearchService: Failed to initialize services: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<TrainSearchResult> searchTrains(String fromStation, String toStation, LocalDate date) throws RemoteException {
+        if (availability == null) {
+            throw new RemoteException("Services not properly initialized");
+        }
+        if (date == null) {
+            throw new RemoteException("A search needs a date");
+        }
+        int from = index.stationId(fromStation);
+        int to = index.stationId(toStation);
+        if (from < 0 || to < 0) {
+            throw new RemoteException("Unknown station " + (from < 0 ? fromStation : toStation));
+        }
+
+        List<TrainSearchResult> results = new ArrayList<>();
+        for (long entry : index.trainsBetween(from, to)) {
+            TrainRoute route = index.route(entry);
+            int fromStop = index.fromStop(entry);
+            int toStop = index.toStop(entry);
+            int departure = route.departureMinutes[fromStop];
+            // A train reaching fromStation after midnight left its first station days earlier
+            LocalDate journeyDate = date.minusDays(departure / 1440);
+            if (!route.runsOn(journeyDate.getDayOfWeek())) {
+                continue;
+            }
+            TrainConfig config = route.config;
+            int[] available = new int[config.classes.length];
+            for (int c = 0; c < available.length; c++) {
+                int seats = availability.getAvailableSeats(config.trainNumber, journeyDate, config.classes[c]);
+                available[c] = seats < 0 ? config.capacity(c) : seats;
+            }
+            LocalDateTime start = journeyDate.atStartOfDay();
+            results.add(new TrainSearchResult(config.trainNumber, config.name, fromStation, toStation, journeyDate,
+                fromStop, toStop, start.plusMinutes(departure), start.plusMinutes(route.arrivalMinutes[toStop]),
+                route.distanceKm[toStop] - route.distanceKm[fromStop], config.classes, available));
+        }
+        results.sort(Comparator.comparing(result -> result.departure));
+        return results;
+    }
+}
@@ -0,0 +1,41 @@
+package search;
+
+import reservation.TrainConfig;
+import java.time.DayOfWeek;
+
+// Where a train stops and when. Times are minutes from midnight of the day the train leaves
+// its first station, so a stop reached the next evening is past 1440, and the journey date
+// a booking uses is always that first day. Bit d-1 of runsOn is set when the train leaves its
+// first station on ISO day of week d.
+public class TrainRoute {
+    public static final int DAILY = 0x7F;
+
+    public final TrainConfig config;
+    public final String[] stations;
+    public final int[] arrivalMinutes;
+    public final int[] departureMinutes;
+    public final int[] distanceKm;
+    public final int runsOn;
+
+    public TrainRoute(TrainConfig config, String[] stations, int[] arrivalMinutes, int[] departureMinutes,
+                      int[] distanceKm, int runsOn) {
+        if (stations.length < 2 || arrivalMinutes.length != stations.length
+                || departureMinutes.length != stations.length || distanceKm.length != stations.length) {
+            throw new IllegalArgumentException("Train " + config.trainNumber + " needs a time and distance for each of at least two stops");
+        }
+        if (config.legs != stations.length - 1) {
+            throw new IllegalArgumentException("Train " + config.trainNumber + " is laid out for " + config.legs
+                + " legs but has " + stations.length + " stops");
+        }
+        this.config = config;
+        this.stations = stations;
+        this.arrivalMinutes = arrivalMinutes;
+        this.departureMinutes = departureMinutes;
+        this.distanceKm = distanceKm;
+        this.runsOn = runsOn;
+    }
+
+    public boolean runsOn(DayOfWeek day) {
+        return (runsOn & (1 << (day.getValue() - 1))) != 0;
+    }
+}
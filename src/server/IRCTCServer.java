@@ -1,12 +1,38 @@
 package server;
 
+import booking.BookingRepository;
 import booking.BookingServiceImpl;
+import booking.IBookingService;
+import reservation.IPartitionDirectory;
+import reservation.IReservationService;
+import reservation.PartitionDirectoryImpl;
+import reservation.ReservationRouter;
 import reservation.ReservationServiceImpl;
+import payment.IPaymentService;
 import payment.PaymentServiceImpl;
 import cancellation.CancellationServiceImpl;
+import cancellation.ICancellationService;
+import common.Log;
+import common.PartitionMap;
+import common.ServiceDirectory;
+import fare.FareEngine;
+import ledger.BookingLedger;
+import ledger.LedgerState;
+import search.ISearchService;
+import search.RouteCatalog;
+import search.SearchServiceImpl;
+import search.TrainRoute;
+import metrics.MetricsEndpoint;
+import metrics.ServiceMetrics;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.rmi.Remote;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
 
 public class IRCTCServer {
     public static void main(String[] args) {
@@ -15,40 +41,93 @@ public class IRCTCServer {
             Registry registry = null;
             try {
                 registry = LocateRegistry.createRegistry(1099);
-                System.out.println("Java RMI registry created.");
+                Log.info("Java RMI registry created.");
             } catch (RemoteException e) {
-                System.out.println("Java RMI registry already exists.");
+                Log.info("Java RMI registry already exists.");
                 registry = LocateRegistry.getRegistry();
             }
 
-            // Create and bind services in the correct order
-            ReservationServiceImpl reservationService = new ReservationServiceImpl();
-            registry.rebind("ReservationService", reservationService);
-            System.out.println("ReservationService bound");
+            // Replay the booking ledger before any service takes traffic
+            BookingLedger ledger = new BookingLedger(new File(System.getProperty("irctc.dataDir", "data")));
+            LedgerState recovered = ledger.recoveredState();
+
+            // Named trains plus any generated with -Dirctc.search.syntheticTrains
+            List<TrainRoute> synthetic = RouteCatalog.syntheticFromSystemProperties();
+            List<TrainRoute> routes = new ArrayList<>(RouteCatalog.defaults());
+            routes.addAll(synthetic);
+
+            // Create and bind services in the correct order. With -Dirctc.reservation.nodes the
+            // inventory lives on ReservationNodes and this server only routes to them; the
+            // nodes generate the same synthetic trains from the same properties.
+            IReservationService reservationService;
+            String reservationNodes = System.getProperty("irctc.reservation.nodes");
+            if (reservationNodes != null) {
+                registry.rebind("PartitionMap", new PartitionDirectoryImpl(PartitionMap.parse(1, reservationNodes)));
+                reservationService = new ReservationRouter((IPartitionDirectory) registry.lookup("PartitionMap"));
+            } else {
+                ReservationServiceImpl inventory = new ReservationServiceImpl();
+                for (TrainRoute route : synthetic) {
+                    inventory.registerTrain(route.config);
+                }
+                reservationService = inventory;
+            }
+            reservationService.restoreSeats(recovered.bookedAllocations());
+            for (Map.Entry<LedgerState.Pool, Integer> pool : recovered.unallocatedSeats().entrySet()) {
+                reservationService.restoreBookedSeats(pool.getKey().trainNumber, pool.getKey().journeyDate(),
+                    pool.getKey().travelClass(), pool.getValue());
+            }
+            Log.info("Restored bookings up to ID " + recovered.maxBookingId);
+            bind(registry, "ReservationService", IReservationService.class, reservationService);
+            Log.info("ReservationService bound");
 
             PaymentServiceImpl paymentService = new PaymentServiceImpl();
-            registry.rebind("PaymentService", paymentService);
-            System.out.println("PaymentService bound");
+            bind(registry, "PaymentService", IPaymentService.class, paymentService);
+            Log.info("PaymentService bound");
 
-            BookingServiceImpl bookingService = new BookingServiceImpl();
-            registry.rebind("BookingService", bookingService);
-            System.out.println("BookingService bound");
+            BookingRepository bookingRepository = new BookingRepository(ledger);
+            if (reservationService instanceof ReservationRouter) {
+                ((ReservationRouter) reservationService).rebuildRestartedNodesFrom(bookingRepository::holdingSeats);
+            }
+            FareEngine fareEngine = FareEngine.fromSystemProperties();
+            BookingServiceImpl bookingService = new BookingServiceImpl(ledger, bookingRepository, fareEngine,
+                Integer.getInteger("irctc.nodeId", 0));
+            bind(registry, "BookingService", IBookingService.class, bookingService);
+            Log.info("BookingService bound");
 
-            CancellationServiceImpl cancellationService = new CancellationServiceImpl();
-            registry.rebind("CancellationService", cancellationService);
-            System.out.println("CancellationService bound");
+            CancellationServiceImpl cancellationService = new CancellationServiceImpl(ledger, bookingRepository, fareEngine);
+            bind(registry, "CancellationService", ICancellationService.class, cancellationService);
+            Log.info("CancellationService bound");
 
-            System.out.println("IRCTC Server is running on port 1099...");
+            SearchServiceImpl searchService = new SearchServiceImpl(routes);
+            bind(registry, "SearchService", ISearchService.class, searchService);
+            Log.info("SearchService bound");
+
+            MetricsEndpoint.startFromSystemProperties();
+            Log.info("IRCTC Server is running on port 1099...");
             
             // Test services
-            System.out.println("Testing services...");
-            System.out.println("Available seats: " + reservationService.getAvailableSeats());
-            System.out.println("All services are working properly!");
+            Log.info("Testing services...");
+            Log.info("Available seats: " + reservationService.getAvailableSeats());
+            Log.info("All services are working properly!");
             
         } catch (Exception e) {
-            System.err.println("Server exception: " + e.toString());
+            Log.error("Server exception", e);
             e.printStackTrace();
             System.exit(1);
         }
     }
+
+    // Binds the service in the registry for remote callers and in the local directory so
+    // services in this JVM call it directly. With metrics on (the default) both see the
+    // instrumented wrapper, so remote and co-located calls are measured alike.
+    private static <T extends Remote> void bind(Registry registry, String name, Class<T> type, T service) throws RemoteException {
+        Remote endpoint = service;
+        if (ServiceMetrics.enabled()) {
+            T instrumented = ServiceMetrics.instrument(name, type, service);
+            UnicastRemoteObject.exportObject(instrumented, 0);
+            endpoint = instrumented;
+        }
+        registry.rebind(name, endpoint);
+        ServiceDirectory.register(name, endpoint);
+    }
 } 
\ No newline at end of file